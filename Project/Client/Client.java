@@ -1,12 +1,19 @@
 package Project.Client;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
@@ -16,11 +23,16 @@ import Project.Common.ConnectionPayload;
 import Project.Common.Grid;
 import Project.Common.LoggerUtil;
 import Project.Common.Payload;
+import Project.Common.PayloadCodec;
 import Project.Common.PayloadType;
 import Project.Common.Phase;
 import Project.Common.PickPayload;
 import Project.Common.ReadyPayload;
+import Project.Common.ResumePayload;
 import Project.Common.RoomResultsPayload;
+import Project.Common.RoomSnapshotPayload;
+import Project.Common.RoundResultPayload;
+import Project.Common.ScoreboardPayload;
 import Project.Common.TextFX;
 import Project.Common.XYPayload;
 import Project.Common.TextFX.Color;
@@ -43,8 +55,8 @@ public enum Client {
         LoggerUtil.INSTANCE.setConfig(config);
     }
     private Socket server = null;
-    private ObjectOutputStream out = null;
-    private ObjectInputStream in = null;
+    private DataOutputStream out = null;
+    private DataInputStream in = null;
     final Pattern ipAddressPattern = Pattern
             .compile("/connect\\s+(\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}:\\d{3,5})");
     final Pattern localhostPattern = Pattern.compile("/connect\\s+(localhost:\\d{3,5})");
@@ -52,12 +64,23 @@ public enum Client {
     private ConcurrentHashMap<Long, ClientPlayer> knownClients = new ConcurrentHashMap<>();
     private ClientPlayer myData;
     private Phase currentPhase = Phase.READY;
+    // room list paging: the last query, where it continues (null when done) and rooms shown so far
+    private volatile String roomQuery = "";
+    private volatile String roomCursor = null;
+    private int roomsShown = 0;
+    // resuming a dropped session (see SessionRegistry on the server)
+    private volatile String resumeToken = null; // from CLIENT_ID, null when there's no session to resume
+    private volatile long received = 0; // Payloads received in this session, CLIENT_ID not counted
+    private String serverAddress = null; // where a dropped connection reconnects to
+    private int serverPort = 0;
+    private static final int RECONNECT_ATTEMPTS = 5;
 
     // constants (used to reduce potential types when using them in code)
     private final String COMMAND_CHARACTER = "/";
     private final String CREATE_ROOM = "createroom";
     private final String JOIN_ROOM = "joinroom";
     private final String LIST_ROOMS = "listrooms";
+    private final String NEXT_ROOMS = "nextrooms";
     private final String DISCONNECT = "disconnect";
     private final String LOGOFF = "logoff";
     private final String LOGOUT = "logout";
@@ -94,15 +117,18 @@ public enum Client {
      * @return true if connection was successful
      */
     private boolean connect(String address, int port) {
+        serverAddress = address;
+        serverPort = port;
         try {
             server = new Socket(address, port);
             // channel to send to server
-            out = new ObjectOutputStream(server.getOutputStream());
+            out = new DataOutputStream(new BufferedOutputStream(server.getOutputStream()));
             // channel to listen to server
-            in = new ObjectInputStream(server.getInputStream());
+            in = new DataInputStream(new BufferedInputStream(server.getInputStream()));
             LoggerUtil.INSTANCE.info("Client connected");
-            // Use CompletableFuture to run listenToServer() in a separate thread
-            CompletableFuture.runAsync(this::listenToServer);
+            // Run listenToServer() on a virtual thread so the blocking read parks
+            // instead of tying up a common pool thread
+            Thread.ofVirtual().name("listenToServer").start(this::listenToServer);
         } catch (UnknownHostException e) {
             LoggerUtil.INSTANCE.warning("Unknown host", e);
         } catch (IOException e) {
@@ -201,6 +227,10 @@ public enum Client {
                         sendListRooms(commandValue);
                         wasCommand = true;
                         break;
+                    case NEXT_ROOMS:
+                        sendNextRooms();
+                        wasCommand = true;
+                        break;
                     // Note: these are to disconnect, they're not for changing rooms
                     case DISCONNECT:
                     case LOGOFF:
@@ -255,6 +285,8 @@ public enum Client {
     }
 
     // send methods to pass data to the ServerThread
+    // Note: the *Payload() builders are package-private so LoadGenerator sends
+    // exactly what this client sends
 
     private void sendMove(int x, int y) {
         // check local grid first
@@ -263,17 +295,24 @@ public enum Client {
                     .println(TextFX.colorize("That coordinate is already occupied, please try another", Color.YELLOW));
             return;
         }*/
+        send(movePayload(x, y));
+    }
+
+    static Payload movePayload(int x, int y) {
         XYPayload p = new XYPayload(x, y);
         p.setPayloadType(PayloadType.MOVE);
-        send(p);
+        return p;
     }
 
     public void sendPick(String pick){
-        PickPayload pickP = new PickPayload(pick);
         myData.setPick(pick);
-        pickP.setPick(myData.getPick());
+        send(pickPayload(myData.getPick()));
+    }
+
+    static Payload pickPayload(String pick) {
+        PickPayload pickP = new PickPayload(pick);
         pickP.setPayloadType(PayloadType.PICK);
-        send(pickP);
+        return pickP;
     }
 
     /**
@@ -281,9 +320,13 @@ public enum Client {
      * Can also be used to toggle the ready state if coded on the server-side
      */
     private void sendReady() {
+        send(readyPayload());
+    }
+
+    static Payload readyPayload() {
         ReadyPayload rp = new ReadyPayload();
         rp.setReady(true); // <- techically not needed as we'll use the payload type as a trigger
-        send(rp);
+        return rp;
     }
 
     /**
@@ -292,10 +335,34 @@ public enum Client {
      * @param roomQuery optional partial match search String
      */
     private void sendListRooms(String roomQuery) {
-        Payload p = new Payload();
-        p.setPayloadType(PayloadType.ROOM_LIST);
-        p.setMessage(roomQuery);
-        send(p);
+        this.roomQuery = roomQuery;
+        this.roomCursor = null;
+        send(roomListPayload(roomQuery, null, 0));
+    }
+
+    /**
+     * Asks for the rooms after the last ones shown by /listrooms
+     */
+    private void sendNextRooms() {
+        String cursor = roomCursor;
+        if (cursor == null) {
+            System.out.println(TextFX.colorize("No more rooms, use /listrooms to search again", Color.YELLOW));
+            return;
+        }
+        send(roomListPayload(roomQuery, cursor, 0));
+    }
+
+    /**
+     * @param roomQuery part of the name, empty for all rooms
+     * @param cursor    where the previous response stopped, null for the start
+     * @param limit     page size, 0 for the server's default
+     */
+    static Payload roomListPayload(String roomQuery, String cursor, int limit) {
+        RoomResultsPayload rrp = new RoomResultsPayload();
+        rrp.setMessage(roomQuery);
+        rrp.setCursor(cursor);
+        rrp.setLimit(limit);
+        return rrp;
     }
 
     /**
@@ -304,10 +371,7 @@ public enum Client {
      * @param room
      */
     private void sendCreateRoom(String room) {
-        Payload p = new Payload();
-        p.setPayloadType(PayloadType.ROOM_CREATE);
-        p.setMessage(room);
-        send(p);
+        send(roomPayload(PayloadType.ROOM_CREATE, room));
     }
 
     /**
@@ -316,16 +380,25 @@ public enum Client {
      * @param room
      */
     private void sendJoinRoom(String room) {
+        send(roomPayload(PayloadType.ROOM_JOIN, room));
+    }
+
+    /**
+     * @param type ROOM_CREATE, ROOM_JOIN or ROOM_LIST
+     * @param room room name or search query
+     */
+    static Payload roomPayload(PayloadType type, String room) {
         Payload p = new Payload();
-        p.setPayloadType(PayloadType.ROOM_JOIN);
+        p.setPayloadType(type);
         p.setMessage(room);
-        send(p);
+        return p;
     }
 
     /**
      * Tells the server-side we want to disconnect
      */
     private void sendDisconnect() {
+        resumeToken = null; // leaving on purpose, don't come back when the connection closes
         Payload p = new Payload();
         p.setPayloadType(PayloadType.DISCONNECT);
         send(p);
@@ -337,34 +410,68 @@ public enum Client {
      * @param message
      */
     private void sendMessage(String message) {
+        send(messagePayload(message));
+    }
+
+    static Payload messagePayload(String message) {
         Payload p = new Payload();
         p.setPayloadType(PayloadType.MESSAGE);
         p.setMessage(message);
-        send(p);
+        return p;
     }
 
     /**
-     * Sends chosen client name after socket handshake
+     * Sends chosen client name after socket handshake; after a dropped
+     * connection it also asks to resume the old session
      */
     private void sendClientName() {
         if (myData.getClientName() == null || myData.getClientName().length() == 0) {
             System.out.println(TextFX.colorize("Name must be set first via /name command", Color.RED));
             return;
         }
+        String token = resumeToken;
+        if (token != null) {
+            send(resumePayload(myData.getClientName(), token, received));
+        } else {
+            send(clientNamePayload(myData.getClientName()));
+        }
+    }
+
+    static Payload resumePayload(String clientName, String token, long received) {
+        ResumePayload rp = new ResumePayload();
+        rp.setClientName(clientName);
+        rp.setToken(token);
+        rp.setReceived(received);
+        return rp;
+    }
+
+    /**
+     * @return answer to the server's heartbeat PING
+     */
+    static Payload pongPayload() {
+        Payload p = new Payload();
+        p.setPayloadType(PayloadType.PONG);
+        return p;
+    }
+
+    static Payload clientNamePayload(String clientName) {
         ConnectionPayload cp = new ConnectionPayload();
-        cp.setClientName(myData.getClientName());
-        send(cp);
+        cp.setClientName(clientName);
+        return cp;
     }
 
     /**
-     * Generic send that passes any Payload over the socket (to ServerThread)
+     * Generic send that passes any Payload over the socket (to ServerThread).
+     * The input thread and the listening thread (PONG) both send, so writes are
+     * serialized
      * 
      * @param p
      */
     private void send(Payload p) {
         try {
-            out.writeObject(p);
-            out.flush();
+            synchronized (out) {
+                PayloadCodec.writeFrame(out, p);
+            }
         } catch (IOException e) {
             LoggerUtil.INSTANCE.severe("Socket send exception", e);
         }
@@ -382,23 +489,33 @@ public enum Client {
         inputFuture.join();
     }
 
+    /**
+     * Forgets the session: who we are, who we know and the token to resume it
+     */
+    private void resetSession() {
+        resumeToken = null;
+        received = 0;
+        myData.reset();
+        knownClients.clear();
+    }
+
     /**
      * Listens for messages from the server
      */
     private void listenToServer() {
         try {
             while (isRunning && isConnected()) {
-                Payload fromServer = (Payload) in.readObject(); // blocking read
-                if (fromServer != null) {
-                    // System.out.println(fromServer);
-                    processPayload(fromServer);
-                } else {
-                    LoggerUtil.INSTANCE.info("Server disconnected");
-                    break;
+                Payload fromServer = PayloadCodec.readFrame(in); // blocking read
+                // System.out.println(fromServer);
+                if (fromServer.getPayloadType() != PayloadType.CLIENT_ID) {
+                    received++; // only this thread updates it
                 }
+                processPayload(fromServer);
             }
-        } catch (ClassCastException | ClassNotFoundException cce) {
-            LoggerUtil.INSTANCE.severe("Error reading object as specified type: ", cce);
+        } catch (StreamCorruptedException sce) {
+            LoggerUtil.INSTANCE.severe("Error reading frame as a Payload: ", sce);
+        } catch (EOFException eof) {
+            LoggerUtil.INSTANCE.info("Server disconnected");
         } catch (IOException e) {
             if (isRunning) {
                 LoggerUtil.INSTANCE.info("Connection dropped", e);
@@ -407,6 +524,36 @@ public enum Client {
             closeServerConnection();
         }
         LoggerUtil.INSTANCE.info("listenToServer thread stopped");
+        if (isRunning && resumeToken != null) {
+            reconnect();
+        } else {
+            resetSession();
+        }
+    }
+
+    /**
+     * Tries to get a dropped session back: reconnects to the same server and
+     * asks to resume, waiting a little longer after each failed attempt. The
+     * server replays what was missed, so the known clients, ready/turn status
+     * and grid are kept until then.
+     */
+    private void reconnect() {
+        for (int attempt = 1; attempt <= RECONNECT_ATTEMPTS && isRunning && resumeToken != null; attempt++) {
+            System.out.println(TextFX.colorize(
+                    String.format("Connection lost, reconnecting (%s/%s)", attempt, RECONNECT_ATTEMPTS), Color.YELLOW));
+            try {
+                Thread.sleep(attempt * 1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (connect(serverAddress, serverPort)) {
+                sendClientName();
+                return;
+            }
+        }
+        System.out.println(TextFX.colorize("Couldn't reconnect, use /connect to start over", Color.RED));
+        resetSession();
     }
 
     /**
@@ -436,8 +583,12 @@ public enum Client {
      * Closes the client connection and associated resources
      */
     private void close() {
+        if (isConnected()) {
+            sendDisconnect(); // so the server doesn't keep our session around for a resume
+        }
         isRunning = false;
         closeServerConnection();
+        resetSession();
         LoggerUtil.INSTANCE.info("Client terminated");
         // System.exit(0); // Terminate the application
     }
@@ -446,8 +597,6 @@ public enum Client {
      * Closes the server connection and associated resources
      */
     private void closeServerConnection() {
-        myData.reset();
-        knownClients.clear();
         try {
             if (out != null) {
                 LoggerUtil.INSTANCE.info("Closing output stream");
@@ -495,12 +644,16 @@ public enum Client {
             switch (payload.getPayloadType()) {
                 case PayloadType.CLIENT_ID: // get id assigned
                     ConnectionPayload cp = (ConnectionPayload) payload;
-                    processClientData(cp.getClientId(), cp.getClientName());
+                    processClientData(cp.getClientId(), cp.getClientName(),
+                            cp instanceof ResumePayload resume ? resume.getToken() : null);
                     break;
                 case PayloadType.SYNC_CLIENT: // silent add
                     cp = (ConnectionPayload) payload;
                     processClientSync(cp.getClientId(), cp.getClientName());
                     break;
+                case PayloadType.ROOM_SNAPSHOT: // silent add of everyone in the room we joined
+                    processRoomSnapshot((RoomSnapshotPayload) payload);
+                    break;
                 case PayloadType.DISCONNECT: // remove a disconnected client (mostly for the specific message vs leaving
                                              // a room)
                     cp = (ConnectionPayload) payload;
@@ -512,7 +665,7 @@ public enum Client {
                     break;
                 case PayloadType.ROOM_LIST:
                     RoomResultsPayload rrp = (RoomResultsPayload) payload;
-                    processRoomsList(rrp.getRooms());
+                    processRoomsList(rrp.getRooms(), rrp.getCursor(), rrp.isLast());
                     break;
                 case PayloadType.MESSAGE: // displays a received message
                     processMessage(payload.getClientId(), payload.getMessage());
@@ -544,9 +697,23 @@ public enum Client {
                     ReadyPayload tp = (ReadyPayload) payload;
                     processTurnStatus(tp.getClientId(), tp.isReady());
                     break;
+                case PayloadType.ROUND_RESULT:
+                    processRoundResult((RoundResultPayload) payload);
+                    break;
                 case PayloadType.POINTS:
-                PointsPayload pp = (PointsPayload) payload;
-                processPoints(pp.getClientId());
+                    PointsPayload pp = (PointsPayload) payload;
+                    processPoints(pp.getClientId(), pp.getChangedPoints(), pp.getCurrentPoints());
+                    break;
+                case PayloadType.SCOREBOARD:
+                    ScoreboardPayload sbp = (ScoreboardPayload) payload;
+                    processScoreboard(sbp.getPoints(), sbp.isSnapshot());
+                    break;
+                case PayloadType.REJECTED:
+                    processRejected(payload.getMessage());
+                    break;
+                case PayloadType.PING: // server checking we're still here
+                    send(pongPayload());
+                    break;
                 default:
                     break;
             }
@@ -615,16 +782,41 @@ public enum Client {
         }
     }
 
-    private void processRoomsList(List<String> rooms) {
-        if (rooms == null || rooms.size() == 0) {
+    /**
+     * Prints one page of room results as it arrives (nothing is kept besides
+     * the cursor, however many rooms match)
+     */
+    private void processRoomsList(List<String> rooms, String cursor, boolean last) {
+        if (rooms != null && !rooms.isEmpty()) {
+            if (roomsShown == 0) {
+                System.out.println(TextFX.colorize("Room Results:", Color.PURPLE));
+            }
+            System.out.println(String.join("\n", rooms));
+            roomsShown += rooms.size();
+        }
+        if (!last) {
+            return;
+        }
+        roomCursor = cursor;
+        if (roomsShown == 0) {
             System.out.println(
                     TextFX.colorize("No rooms found matching your query",
                             Color.RED));
-            return;
+        } else if (cursor != null) {
+            System.out.println(TextFX.colorize("More rooms match, use /nextrooms to see them", Color.YELLOW));
         }
-        System.out.println(TextFX.colorize("Room Results:", Color.PURPLE));
-        System.out.println(
-                String.join("\n", rooms));
+        roomsShown = 0;
+    }
+
+    /**
+     * The server turned the connection away before the handshake (e.g. it's
+     * full); it closes the socket right after
+     * 
+     * @param reason
+     */
+    private void processRejected(String reason) {
+        System.out.println(TextFX.colorize("Connection rejected: " + reason, Color.RED));
+        closeServerConnection();
     }
 
     private void processDisconnect(long clientId, String clientName) {
@@ -633,16 +825,31 @@ public enum Client {
                         clientId == myData.getClientId() ? "You" : clientName),
                         Color.RED));
         if (clientId == myData.getClientId()) {
+            resumeToken = null; // the server ended the session, there's nothing to resume
             closeServerConnection();
         }
     }
 
-    private void processClientData(long clientId, String clientName) {
-        if (myData.getClientId() == ClientPlayer.DEFAULT_CLIENT_ID) {
-            myData.setClientId(clientId);
-            myData.setClientName(clientName);
-            // knownClients.put(cp.getClientId(), myData);// <-- this is handled later
+    /**
+     * @param resumeToken null if the server doesn't resume sessions
+     */
+    private void processClientData(long clientId, String clientName, String resumeToken) {
+        if (resumeToken != null && resumeToken.equals(this.resumeToken) && clientId == myData.getClientId()) {
+            // the missed Payloads come right after this, everything else is still current
+            System.out.println(TextFX.colorize("Reconnected", Color.GREEN));
+            return;
+        }
+        if (myData.getClientId() != ClientPlayer.DEFAULT_CLIENT_ID) {
+            // a new session instead of the old one (e.g. it expired), what we knew is stale
+            knownClients.clear();
+            grid = null;
+            currentPhase = Phase.READY;
+            received = 0;
         }
+        myData.setClientId(clientId);
+        myData.setClientName(clientName);
+        this.resumeToken = resumeToken;
+        // knownClients.put(cp.getClientId(), myData);// <-- this is handled later
     }
 
     private void processMessage(long clientId, String message) {
@@ -659,6 +866,23 @@ public enum Client {
         }
     }
 
+    /**
+     * Adds everyone in the room we just joined to knownClients along with their
+     * ready and turn status and points
+     */
+    private void processRoomSnapshot(RoomSnapshotPayload rsp) {
+        List<Long> clientIds = rsp.getClientIds();
+        for (int i = 0; i < clientIds.size(); i++) {
+            processClientSync(clientIds.get(i), rsp.getClientNames().get(i));
+            ClientPlayer cp = knownClients.get(clientIds.get(i));
+            cp.setReady(rsp.getReady().get(i));
+            cp.setTakeTurn(rsp.getTookTurn().get(i));
+            if (i < rsp.getPoints().size()) {
+                cp.setPoints(rsp.getPoints().get(i));
+            }
+        }
+    }
+
     private void processRoomAction(long clientId, String clientName, String message, boolean isJoin) {
         if (isJoin && !knownClients.containsKey(clientId)) {
             ClientPlayer cd = new ClientPlayer();
@@ -681,12 +905,77 @@ public enum Client {
             }
         }
     }
-    private void processPoints(long l){
-        PointsPayload pp = new PointsPayload();
-        if(knownClients.containsKey(pp.getClientId())){
-            ClientPlayer cpp = knownClients.get(pp.getClientId());
-            cpp.setPoints(pp.getCurrentPoints());
-            LoggerUtil.INSTANCE.info("current points" + pp.getCurrentPoints());
+    /**
+     * Applies a finished round's eliminations to knownClients and prints it
+     * (the new points come right after in a SCOREBOARD)
+     */
+    private void processRoundResult(RoundResultPayload rrp) {
+        Set<Long> eliminated = new HashSet<>(rrp.getEliminated());
+        for (long clientId : eliminated) {
+            ClientPlayer cp = knownClients.get(clientId);
+            if (cp != null) {
+                cp.setEliminated(true);
+            }
+        }
+        System.out.println(TextFX.colorize("Round Results:", Color.PURPLE));
+        for (Map.Entry<Long, String> pick : rrp.getPicks().entrySet()) {
+            ClientPlayer cp = knownClients.get(pick.getKey());
+            String name = cp == null ? "Unknown" : cp.getClientName();
+            int changed = rrp.getPointsChanged().getOrDefault(pick.getKey(), 0);
+            System.out.println(String.format("%s[%s] picked %s%s%s", name, pick.getKey(), pickName(pick.getValue()),
+                    changed != 0 ? String.format(" (%+d)", changed) : "",
+                    eliminated.contains(pick.getKey()) ? " and is eliminated" : ""));
+        }
+        if (eliminated.isEmpty()) {
+            System.out.println(TextFX.colorize("Round tied, nobody is eliminated", Color.YELLOW));
+        } else if (eliminated.contains(myData.getClientId())) {
+            System.out.println(TextFX.colorize("You were eliminated", Color.RED));
+        }
+    }
+
+    private static String pickName(String pick) {
+        switch (pick == null ? "" : pick.trim().toLowerCase()) {
+            case "r":
+                return "rock";
+            case "p":
+                return "paper";
+            case "s":
+                return "scissors";
+            default:
+                return String.valueOf(pick);
+        }
+    }
+
+    private void processPoints(long clientId, int changedPoints, int currentPoints) {
+        ClientPlayer cp = knownClients.get(clientId);
+        if (cp == null) {
+            return;
+        }
+        cp.addPoints(changedPoints);
+        if (cp.getPoints() != currentPoints) { // missed an update, the Server's total wins
+            LoggerUtil.INSTANCE.fine(String.format("Points of %s were %s, resyncing to %s", clientId,
+                    cp.getPoints() - changedPoints, currentPoints));
+            cp.setPoints(currentPoints);
+        }
+    }
+
+    /**
+     * Applies the points that changed (or everyone's for a snapshot) to
+     * knownClients
+     */
+    private void processScoreboard(Map<Long, Integer> points, boolean snapshot) {
+        for (Map.Entry<Long, Integer> entry : points.entrySet()) {
+            ClientPlayer cp = knownClients.get(entry.getKey());
+            if (cp != null) {
+                cp.setPoints(entry.getValue()); // totals, so a missed scoreboard doesn't leave anyone behind
+            }
+        }
+        if (!snapshot) {
+            System.out.println(TextFX.colorize("Scoreboard:", Color.PURPLE));
+            System.out.println(String.join("\n", knownClients.values().stream()
+                    .sorted((a, b) -> Integer.compare(b.getPoints(), a.getPoints()))
+                    .map(c -> String.format("%s[%s] %s points", c.getClientName(), c.getClientId(), c.getPoints()))
+                    .toList()));
         }
     }
     // end payload processors
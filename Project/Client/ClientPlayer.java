@@ -29,10 +29,6 @@ public class ClientPlayer extends Player {
         this.clientName = "";
     }
 
-    public void setPoints(int currentPoints) {
-        this.setPoints(currentPoints);
-    }
-
     public String getPick(){
         return pick;
     }
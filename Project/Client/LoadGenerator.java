@@ -0,0 +1,348 @@
+package Project.Client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import Project.Common.ConnectionPayload;
+import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+import Project.Common.PayloadCodec;
+import Project.Common.PayloadType;
+import Project.Common.Phase;
+import Project.Common.RoundResultPayload;
+
+/**
+ * Headless load generator: simulates many players against a running Server
+ * from one JVM.
+ * Each simulated client connects, sets its name, creates or joins a GameRoom
+ * (roomSize clients per room), readies up whenever the room is in the READY
+ * phase, picks r/p/s each round and chats on a fixed schedule. Payloads are
+ * built with the same builders Client uses.
+ * <p>
+ * Reports payload throughput and p50/p99/p999 round-trip latency for:
+ * - MESSAGE echo: sending a chat message until the room echoes it back
+ * - PICK to ROUND_RESULT: sending the pick (MOVE + PICK, like /pick) until the
+ * round's result comes back (includes waiting for the rest of the room to pick)
+ * </p>
+ * <p>
+ * Sessions only start once the server's ready timer (30 seconds) expires, so
+ * runs shorter than that only measure chat.
+ * </p>
+ * <p>
+ * Usage: java Project.Client.LoadGenerator [host:port] [clients] [roomSize]
+ * [seconds]
+ * <br>
+ * Tunable with -Dload.chatInterval=100 and -Dload.pickDelay=50
+ * (milliseconds)
+ * </p>
+ */
+public class LoadGenerator {
+    private static final String ECHO_PREFIX = "lg:"; // chat messages carry their send time
+    private static final String[] PICKS = { "r", "p", "s" };
+    private static final long CHAT_INTERVAL = Long.getLong("load.chatInterval", 100);
+    private static final long PICK_DELAY = Long.getLong("load.pickDelay", 50);
+
+    private final LongAdder sentPayloads = new LongAdder();
+    private final LongAdder receivedPayloads = new LongAdder();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            Thread.ofPlatform().name("LoadGenerator-", 0).daemon(true).factory());
+    private volatile boolean isRunning = true;
+
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = 3000;
+        int clients = 100;
+        int roomSize = 4;
+        int seconds = 60;
+        try {
+            String[] address = args[0].split(":");
+            host = address[0];
+            port = Integer.parseInt(address[1]);
+            clients = Integer.parseInt(args[1]);
+            roomSize = Integer.parseInt(args[2]);
+            seconds = Integer.parseInt(args[3]);
+        } catch (Exception e) {
+            // missing arguments keep the defaults above
+        }
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("loadgen.log");
+        config.setFileLogLevel(Level.WARNING);
+        config.setConsoleLogLevel(Level.WARNING);
+        config.setCaptureCallerClass(false);
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        new LoadGenerator().run(host, port, clients, Math.max(1, roomSize), seconds);
+    }
+
+    private void run(String host, int port, int clientCount, int roomSize, int seconds) throws Exception {
+        List<SimulatedClient> clients = new ArrayList<>(clientCount);
+        for (int i = 0; i < clientCount; i++) {
+            SimulatedClient client = new SimulatedClient("load-" + i);
+            client.connect(host, port);
+            clients.add(client);
+        }
+        for (SimulatedClient client : clients) {
+            if (!client.hasId.await(10, TimeUnit.SECONDS)) {
+                throw new IOException(client.name + " never received its client id");
+            }
+        }
+
+        // the first client of each group creates the room (joining it), the rest join once it exists
+        String runId = Long.toString(System.currentTimeMillis() % 100_000, 36);
+        for (int start = 0; start < clientCount; start += roomSize) {
+            List<SimulatedClient> group = clients.subList(start, Math.min(clientCount, start + roomSize));
+            String room = "load-" + runId + "-" + (start / roomSize);
+            group.forEach(client -> client.room = room);
+            group.get(0).send(Client.roomPayload(PayloadType.ROOM_CREATE, room));
+        }
+        for (int start = 0; start < clientCount; start += roomSize) {
+            SimulatedClient leader = clients.get(start);
+            if (!leader.inRoom.await(10, TimeUnit.SECONDS)) {
+                throw new IOException(leader.name + " couldn't create room " + leader.room);
+            }
+            for (SimulatedClient client : clients.subList(start + 1, Math.min(clientCount, start + roomSize))) {
+                client.send(Client.roomPayload(PayloadType.ROOM_JOIN, client.room));
+            }
+        }
+        for (SimulatedClient client : clients) {
+            if (!client.inRoom.await(10, TimeUnit.SECONDS)) {
+                throw new IOException(client.name + " couldn't join room " + client.room);
+            }
+        }
+        System.out.println(String.format("%s clients connected in %s rooms, running for %ss", clientCount,
+                (clientCount + roomSize - 1) / roomSize, seconds));
+
+        for (SimulatedClient client : clients) {
+            scheduler.scheduleAtFixedRate(client::sendChat, ThreadLocalRandom.current().nextLong(CHAT_INTERVAL),
+                    CHAT_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        long sentBefore = sentPayloads.sum();
+        long receivedBefore = receivedPayloads.sum();
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long sent = sentPayloads.sum() - sentBefore;
+        long received = receivedPayloads.sum() - receivedBefore;
+        isRunning = false;
+        scheduler.shutdownNow();
+        clients.forEach(SimulatedClient::close);
+
+        Latencies echo = new Latencies();
+        Latencies results = new Latencies();
+        for (SimulatedClient client : clients) {
+            echo.addAll(client.echoLatencies);
+            results.addAll(client.resultLatencies);
+        }
+        System.out.println(String.format("%-14s %12.0f payloads/s", "sent", sent / elapsed));
+        System.out.println(String.format("%-14s %12.0f payloads/s", "received", received / elapsed));
+        System.out.println(String.format("%-14s %10s %10s %10s %10s %10s", "latency (ms)", "count", "p50", "p99",
+                "p999", "max"));
+        echo.print("MESSAGE echo");
+        results.print("PICK->RESULT");
+    }
+
+    /**
+     * One simulated player: a socket, a virtual reader thread reacting to the
+     * room's payloads and the latencies it measured
+     */
+    private class SimulatedClient {
+        private final String name;
+        private final Random random = new Random();
+        private final CountDownLatch hasId = new CountDownLatch(1);
+        private final CountDownLatch inRoom = new CountDownLatch(1);
+        private final Latencies echoLatencies = new Latencies();
+        private final Latencies resultLatencies = new Latencies();
+        private Socket socket;
+        private DataOutputStream out;
+        private volatile String room;
+        private volatile long clientId = ClientPlayer.DEFAULT_CLIENT_ID;
+        private volatile Phase phase = Phase.READY;
+        private volatile long pickSentAt = 0; // 0 when no pick is waiting for its ROUND_RESULT
+
+        SimulatedClient(String name) {
+            this.name = name;
+        }
+
+        void connect(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Thread.ofVirtual().name("LoadGenerator-" + name).start(() -> listen(in));
+            send(Client.clientNamePayload(name));
+        }
+
+        /**
+         * Sends from the scheduler and reader threads, so writes are serialized
+         */
+        void send(Payload payload) {
+            try {
+                synchronized (out) {
+                    PayloadCodec.writeFrame(out, payload);
+                }
+                sentPayloads.increment();
+            } catch (IOException e) {
+                if (isRunning) {
+                    LoggerUtil.INSTANCE.warning(name + " send failed", e);
+                }
+            }
+        }
+
+        void sendChat() {
+            if (inRoom.getCount() == 0) {
+                send(Client.messagePayload(ECHO_PREFIX + System.nanoTime()));
+            }
+        }
+
+        void sendPick() {
+            if (!isRunning || phase != Phase.IN_PROGRESS || pickSentAt != 0) {
+                return;
+            }
+            String pick = PICKS[random.nextInt(PICKS.length)];
+            pickSentAt = System.nanoTime();
+            // same two payloads as the /pick command
+            send(Client.movePayload(0, Arrays.asList(PICKS).indexOf(pick)));
+            send(Client.pickPayload(pick));
+        }
+
+        private void listen(DataInputStream in) {
+            try {
+                while (isRunning) {
+                    Payload payload = PayloadCodec.readFrame(in);
+                    receivedPayloads.increment();
+                    processPayload(payload);
+                }
+            } catch (IOException e) {
+                if (isRunning) {
+                    LoggerUtil.INSTANCE.warning(name + " lost its connection", e);
+                }
+            }
+        }
+
+        /**
+         * The subset of Client.processPayload a scripted player cares about
+         */
+        private void processPayload(Payload payload) {
+            switch (payload.getPayloadType()) {
+                case CLIENT_ID:
+                    clientId = payload.getClientId();
+                    hasId.countDown();
+                    break;
+                case REJECTED:
+                    LoggerUtil.INSTANCE.warning(name + " rejected: " + payload.getMessage());
+                    break;
+                case PING:
+                    send(Client.pongPayload());
+                    break;
+                case ROOM_JOIN:
+                    ConnectionPayload cp = (ConnectionPayload) payload;
+                    if (cp.getClientId() == clientId && cp.isConnect() && cp.getMessage().equalsIgnoreCase(room)) {
+                        inRoom.countDown();
+                    }
+                    break;
+                case MESSAGE:
+                    String message = payload.getMessage();
+                    if (payload.getClientId() == clientId && message != null && message.startsWith(ECHO_PREFIX)) {
+                        long sentAt = Long.parseLong(message.substring(ECHO_PREFIX.length()));
+                        echoLatencies.add(System.nanoTime() - sentAt);
+                    }
+                    break;
+                case PHASE:
+                    phase = Phase.valueOf(payload.getMessage());
+                    if (phase == Phase.READY) {
+                        pickSentAt = 0; // the session ended, that pick won't be scored
+                        send(Client.readyPayload());
+                    } else if (phase == Phase.IN_PROGRESS) {
+                        schedulePick();
+                    }
+                    break;
+                case TURN:
+                    if (payload.getClientId() < 1) { // turn reset, the round was resolved
+                        pickSentAt = 0; // the pick didn't count (e.g. already eliminated), don't wait for it
+                        schedulePick();
+                    }
+                    break;
+                case ROUND_RESULT:
+                    long sentAt = pickSentAt;
+                    if (sentAt != 0 && ((RoundResultPayload) payload).getPicks().containsKey(clientId)) {
+                        resultLatencies.add(System.nanoTime() - sentAt);
+                        pickSentAt = 0;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void schedulePick() {
+            if (isRunning) {
+                scheduler.schedule(this::sendPick, PICK_DELAY, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore, the run is over
+            }
+        }
+    }
+
+    /**
+     * Growable list of nanosecond samples, synchronized so the report can merge
+     * them while readers finish
+     */
+    private static class Latencies {
+        private long[] samples = new long[1024];
+        private int size = 0;
+
+        synchronized void add(long nanos) {
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = nanos;
+        }
+
+        synchronized void addAll(Latencies other) {
+            synchronized (other) {
+                for (int i = 0; i < other.size; i++) {
+                    add(other.samples[i]);
+                }
+            }
+        }
+
+        synchronized void print(String label) {
+            if (size == 0) {
+                System.out.println(String.format("%-14s %10s", label, 0));
+                return;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            System.out.println(String.format("%-14s %10s %10.3f %10.3f %10.3f %10.3f", label, size,
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    sorted[size - 1] / 1e6));
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
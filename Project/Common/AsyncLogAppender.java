@@ -0,0 +1,239 @@
+package Project.Common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Hands log records to a background thread so file/console I/O happens off the
+ * caller's thread.
+ * Callers only claim a slot in a bounded lock-free ring buffer; one drain thread
+ * formats and writes the records through the wrapped handlers. What happens
+ * when the buffer is full is decided by the OverflowPolicy.
+ */
+public class AsyncLogAppender {
+    /**
+     * What a caller does when the buffer is full.
+     * WARNING and SEVERE records always wait for space, only lower levels are
+     * ever dropped.
+     */
+    public enum OverflowPolicy {
+        BLOCK, // wait for the drain thread to make space
+        DROP, // discard the record
+        SAMPLE, // keep 1 in sampleRate records (those wait), discard the rest
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Handler[] handlers;
+    private final OverflowPolicy policy;
+    private final int sampleRate;
+    private final Thread drainer;
+
+    // ring buffer: slot i is free for producer position p when sequences[i] == p,
+    // and holds a record for consumer position c when sequences[i] == c + 1
+    private final AtomicReferenceArray<LogRecord> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // next producer position
+    private long head = 0; // next consumer position (drain thread only)
+
+    private final AtomicLong accepted = new AtomicLong();
+    private volatile long written = 0;
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong overflowCount = new AtomicLong(); // drives SAMPLE
+    private volatile boolean isSleeping = false;
+    private volatile boolean isRunning = true;
+
+    /**
+     * @param capacity   buffer size, rounded up to a power of two
+     * @param policy     what to do when the buffer is full
+     * @param sampleRate for SAMPLE, keep 1 in this many records while full
+     * @param handlers   where records are written (on the drain thread)
+     */
+    public AsyncLogAppender(int capacity, OverflowPolicy policy, int sampleRate, Handler... handlers) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.policy = policy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.handlers = handlers;
+        this.drainer = Thread.ofPlatform().name("AsyncLogAppender").daemon(true).start(this::drainLoop);
+    }
+
+    /**
+     * Queues a record for the drain thread (any thread, lock-free unless the
+     * policy has to wait for space)
+     *
+     * @param record
+     */
+    public void publish(LogRecord record) {
+        if (!isRunning) {
+            write(record); // closed, nothing will drain the buffer anymore
+            return;
+        }
+        if (!offer(record) && !handleOverflow(record)) {
+            dropped.increment();
+            return;
+        }
+        accepted.incrementAndGet();
+        if (isSleeping) {
+            LockSupport.unpark(drainer);
+        }
+    }
+
+    /**
+     * @return true once the record is in the buffer, false to drop it
+     */
+    private boolean handleOverflow(LogRecord record) {
+        boolean mustKeep = record.getLevel().intValue() >= Level.WARNING.intValue();
+        if (!mustKeep) {
+            if (policy == OverflowPolicy.DROP) {
+                return false;
+            }
+            if (policy == OverflowPolicy.SAMPLE && overflowCount.incrementAndGet() % sampleRate != 0) {
+                return false;
+            }
+        }
+        LockSupport.unpark(drainer);
+        while (!offer(record)) {
+            if (!isRunning) {
+                write(record); // closed while waiting, write it ourselves
+                return true;
+            }
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        return true;
+    }
+
+    private boolean offer(LogRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, record);
+                    sequences.set(index, position + 1); // publishes the slot to the drain thread
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // full, the slot still holds a record from a lap ago
+            } else {
+                position = tail.get(); // another producer claimed it, retry
+            }
+        }
+    }
+
+    private LogRecord poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null; // empty (or a producer hasn't finished writing the slot)
+        }
+        LogRecord record = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, head + mask + 1); // free for the producer one lap ahead
+        head++;
+        return record;
+    }
+
+    private void drainLoop() {
+        while (isRunning) {
+            if (!drainAvailable()) {
+                isSleeping = true;
+                if (accepted.get() == written) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                isSleeping = false;
+            }
+        }
+    }
+
+    /**
+     * @return true if anything was written
+     */
+    private boolean drainAvailable() {
+        LogRecord record;
+        long count = 0;
+        while ((record = poll()) != null) {
+            write(record);
+            count++;
+        }
+        if (count > 0) {
+            written += count;
+        }
+        return count > 0;
+    }
+
+    private void write(LogRecord record) {
+        for (Handler handler : handlers) {
+            try {
+                handler.publish(record);
+            } catch (Exception e) {
+                // a broken handler shouldn't stop the others or the drain thread
+            }
+        }
+    }
+
+    /**
+     * Waits until everything accepted so far has been written, then flushes the
+     * handlers
+     */
+    public void flush() {
+        long target = accepted.get();
+        while (isRunning && drainer.isAlive() && written < target) {
+            LockSupport.unpark(drainer);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        for (Handler handler : handlers) {
+            handler.flush();
+        }
+    }
+
+    /**
+     * Writes everything still buffered, stops the drain thread and closes the
+     * handlers. Later records are written synchronously.
+     */
+    public void close() {
+        if (!isRunning) {
+            return;
+        }
+        flush();
+        isRunning = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!drainer.isAlive()) {
+            drainAvailable(); // anything published while stopping
+        }
+        long droppedCount = dropped.sum();
+        if (droppedCount > 0) {
+            write(new LogRecord(Level.WARNING, "Async log buffer overflowed, dropped " + droppedCount + " records"));
+        }
+        for (Handler handler : handlers) {
+            handler.close();
+        }
+    }
+
+    /**
+     * @return number of records discarded by the overflow policy
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+}
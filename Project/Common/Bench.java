@@ -0,0 +1,126 @@
+package Project.Common;
+
+import java.util.Locale;
+
+/**
+ * Small JMH-style harness used by the benchmark suites (CommonBenchmarks,
+ * ServerBenchmarks); the project builds with plain javac so JMH itself isn't
+ * available.
+ * Each benchmark gets warmup iterations, then measurement iterations of a fixed
+ * duration, and reports the average time per operation like JMH's avgt mode.
+ * <p>
+ * Tunable with system properties:
+ * -Dbench.filter=text (only names containing it), -Dbench.warmup=3,
+ * -Dbench.iterations=5, -Dbench.time=1000 (milliseconds per iteration)
+ * </p>
+ */
+public final class Bench {
+    /**
+     * A benchmarked operation; return a value so the work can't be optimized
+     * away
+     */
+    @FunctionalInterface
+    public interface Op {
+        Object run() throws Exception;
+    }
+
+    private static final String FILTER = System.getProperty("bench.filter", "");
+    private static final int WARMUP = Integer.getInteger("bench.warmup", 3);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+    private static final long ITERATION_NANOS = Long.getLong("bench.time", 1000) * 1_000_000;
+
+    private static volatile Object sink; // the "blackhole"
+    private static boolean isHeaderPrinted = false;
+
+    private Bench() {
+    }
+
+    /**
+     * Measures op
+     *
+     * @param name shown in the results and matched by bench.filter
+     * @param op   the operation to time
+     */
+    public static void run(String name, Op op) throws Exception {
+        run(name, null, op);
+    }
+
+    /**
+     * Measures op, running setup before every invocation without timing it
+     * (like JMH's Level.Invocation). Only use it for operations that take
+     * microseconds or more, each invocation is timed separately.
+     *
+     * @param name  shown in the results and matched by bench.filter
+     * @param setup untimed, may be null
+     * @param op    the operation to time
+     */
+    public static void run(String name, Runnable setup, Op op) throws Exception {
+        if (!name.contains(FILTER)) {
+            return;
+        }
+        if (!isHeaderPrinted) {
+            System.out.println(String.format(Locale.ROOT, "%-48s %4s %5s %14s   %12s  %s", "Benchmark", "Mode", "Cnt",
+                    "Score", "Error", "Units"));
+            isHeaderPrinted = true;
+        }
+        for (int i = 0; i < WARMUP; i++) {
+            iteration(setup, op);
+        }
+        double[] scores = new double[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            scores[i] = iteration(setup, op);
+        }
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double stdev = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+        System.out.println(String.format(Locale.ROOT, "%-48s %4s %5d %14.3f +- %12.3f  ns/op", name, "avgt",
+                scores.length, mean, stdev));
+    }
+
+    /**
+     * @return average nanoseconds per operation over one iteration
+     */
+    private static double iteration(Runnable setup, Op op) throws Exception {
+        long operations = 0;
+        long measured = 0;
+        long end = System.nanoTime() + ITERATION_NANOS;
+        if (setup == null) {
+            long start = System.nanoTime();
+            long now;
+            do {
+                // batches keep the clock reads out of the measurement
+                for (int i = 0; i < 64; i++) {
+                    sink = op.run();
+                }
+                operations += 64;
+                now = System.nanoTime();
+            } while (now < end);
+            measured = now - start;
+        } else {
+            do {
+                setup.run();
+                long start = System.nanoTime();
+                sink = op.run();
+                measured += System.nanoTime() - start;
+                operations++;
+            } while (System.nanoTime() < end);
+        }
+        return measured / (double) operations;
+    }
+
+    /**
+     * Hands a value to the blackhole so the JIT can't drop the work producing it
+     *
+     * @param value
+     */
+    public static void consume(Object value) {
+        sink = value;
+    }
+}
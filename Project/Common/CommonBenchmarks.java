@@ -0,0 +1,134 @@
+package Project.Common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Benchmarks for the shared (client and server) hot paths:
+ * PayloadCodec encode/decode for every Payload subclass,
+ * LoggerUtil.CustomFormatter.format, TimedEvent create/cancel and
+ * Histogram.record.
+ * See Bench for the tuning properties.
+ * <p>
+ * Usage: java Project.Common.CommonBenchmarks
+ * </p>
+ */
+public class CommonBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("benchmark.log");
+        config.setFileLogLevel(Level.WARNING);
+        config.setConsoleLogLevel(Level.WARNING);
+        config.setCaptureCallerClass(false);
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        for (Map.Entry<String, Payload> entry : samplePayloads().entrySet()) {
+            Payload payload = entry.getValue();
+            byte[] frame = PayloadCodec.encode(payload);
+            Bench.run("codec.encode." + entry.getKey(), () -> PayloadCodec.encode(payload));
+            Bench.run("codec.decode." + entry.getKey(),
+                    () -> PayloadCodec.decode(frame, PayloadCodec.HEADER_SIZE, frame.length - PayloadCodec.HEADER_SIZE));
+        }
+
+        LoggerUtil.CustomFormatter formatter = new LoggerUtil.CustomFormatter();
+        LogRecord record = new LogRecord(Level.INFO, "Room[lobby]: sending message to 10 recipients: hello there");
+        record.setSourceClassName(null);
+        Bench.run("logger.CustomFormatter.format", () -> formatter.format(record));
+
+        Bench.run("timedEvent.createAndCancel", () -> {
+            TimedEvent event = new TimedEvent(30, () -> {
+            });
+            event.cancel();
+            return event;
+        });
+
+        Histogram histogram = new Histogram();
+        Bench.run("metrics.histogram.record", () -> {
+            histogram.recordSince(System.nanoTime() - 1500);
+            return histogram;
+        });
+    }
+
+    /**
+     * One representative instance of every Payload subclass (and the plain
+     * Payload used for MESSAGE)
+     */
+    private static Map<String, Payload> samplePayloads() {
+        Map<String, Payload> payloads = new LinkedHashMap<>();
+
+        Payload message = new Payload();
+        message.setPayloadType(PayloadType.MESSAGE);
+        message.setClientId(42);
+        message.setMessage("benchmark message with a typical chat length");
+        payloads.put("Payload", message);
+
+        ConnectionPayload connection = new ConnectionPayload();
+        connection.setPayloadType(PayloadType.ROOM_JOIN);
+        connection.setClientId(42);
+        connection.setClientName("benchmark-player");
+        connection.setConnect(true);
+        connection.setMessage("lobby");
+        payloads.put("ConnectionPayload", connection);
+
+        ReadyPayload ready = new ReadyPayload();
+        ready.setClientId(42);
+        ready.setReady(true);
+        payloads.put("ReadyPayload", ready);
+
+        XYPayload xy = new XYPayload(1, 2);
+        xy.setPayloadType(PayloadType.MOVE);
+        xy.setClientId(42);
+        payloads.put("XYPayload", xy);
+
+        PointsPayload points = new PointsPayload();
+        points.setClientId(42);
+        points.setChangedPoints(1);
+        points.setCurrentPoints(7);
+        payloads.put("PointsPayload", points);
+
+        PickPayload pick = new PickPayload("r");
+        pick.setClientId(42);
+        payloads.put("PickPayload", pick);
+
+        RoomResultsPayload rooms = new RoomResultsPayload();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            names.add("room-" + i);
+        }
+        rooms.setRooms(names);
+        payloads.put("RoomResultsPayload", rooms);
+
+        RoundResultPayload round = new RoundResultPayload(); // a 10 player round, rock beats scissors
+        for (long id = 1; id <= 10; id++) {
+            boolean won = id % 2 == 0;
+            round.getPicks().put(id, won ? "r" : "s");
+            if (won) {
+                round.getPointsChanged().put(id, 1);
+            } else {
+                round.getEliminated().add(id);
+            }
+        }
+        payloads.put("RoundResultPayload", round);
+
+        ScoreboardPayload scoreboard = new ScoreboardPayload(); // the winners of that round
+        for (long id = 2; id <= 10; id += 2) {
+            scoreboard.getPoints().put(id, 3);
+        }
+        payloads.put("ScoreboardPayload", scoreboard);
+
+        RoomSnapshotPayload snapshot = new RoomSnapshotPayload(); // what a joiner of a 100 player room gets
+        for (long id = 1; id <= 100; id++) {
+            int index = snapshot.addMember(id, "player-" + id);
+            snapshot.getReady().set(index, id % 3 != 0);
+            snapshot.getTookTurn().set(index, id % 2 == 0);
+            snapshot.getPoints().add((int) (id % 7));
+        }
+        payloads.put("RoomSnapshotPayload", snapshot);
+        return payloads;
+    }
+}
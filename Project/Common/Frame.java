@@ -0,0 +1,64 @@
+package Project.Common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A Payload that's already been encoded (see PayloadCodec).
+ * The bytes are never modified after creation so a single Frame can be written
+ * to any number of connections, i.e. a broadcast only encodes once.
+ */
+public final class Frame {
+    private final byte[] bytes;
+    private final PayloadType payloadType;
+    private final long clientId; // who the Payload is about, used to coalesce queued state updates
+
+    private Frame(byte[] bytes, PayloadType payloadType, long clientId) {
+        this.bytes = bytes;
+        this.payloadType = payloadType;
+        this.clientId = clientId;
+    }
+
+    /**
+     * Encodes a Payload into a Frame
+     *
+     * @param payload
+     * @return the encoded Frame
+     * @throws IOException if the Payload can't be encoded
+     */
+    public static Frame of(Payload payload) throws IOException {
+        return new Frame(PayloadCodec.encode(payload), payload.getPayloadType(), payload.getClientId());
+    }
+
+    public PayloadType getPayloadType() {
+        return payloadType;
+    }
+
+    public long getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @return size in bytes, length prefix included
+     */
+    public int size() {
+        return bytes.length;
+    }
+
+    /**
+     * @return a new read-only view of the bytes with its own position
+     */
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Frame[%s] %s bytes", payloadType, bytes.length);
+    }
+}
@@ -0,0 +1,150 @@
+package Project.Common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram.
+ * Values (nanoseconds) go into log-linear buckets: exact below 32, then 32
+ * linear sub-buckets per power of two, so any recorded value is reported
+ * within ~3% while the whole range (1ns to ~18 minutes) fits in about 1200
+ * counters. Recording is one array increment plus a sum update, it never
+ * allocates or locks, so it can sit on the hot paths it measures.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40; // 2^40ns ~ 18 minutes, larger values are clamped
+    private static final int SIZE = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SIZE);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value
+     *
+     * @param nanos negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Records the time since start
+     *
+     * @param startNanos an earlier System.nanoTime()
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        if (exponent == MAX_EXPONENT) {
+            return SIZE - 1;
+        }
+        int bucket = exponent - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return bucket * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the middle of the values that land in index
+     */
+    private static long valueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int bucket = index >>> SUB_BUCKET_BITS;
+        int subBucket = index & (SUB_BUCKETS - 1);
+        long lowest = (long) (SUB_BUCKETS + subBucket) << (bucket - 1);
+        return lowest + ((1L << (bucket - 1)) >>> 1);
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < SIZE; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return total of all recorded values in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return largest recorded value in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the value at a percentile (reads are not atomic with concurrent
+     * recording, which is fine for monitoring)
+     *
+     * @param percentile between 0 and 100, e.g. 99.9
+     * @return nanoseconds, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        return getValuesAtPercentiles(percentile)[0];
+    }
+
+    /**
+     * Same as getValueAtPercentile() for several percentiles in one pass
+     *
+     * @param percentiles ascending, between 0 and 100
+     * @return nanoseconds for each percentile
+     */
+    public long[] getValuesAtPercentiles(double... percentiles) {
+        long[] snapshot = new long[SIZE];
+        long count = 0;
+        for (int i = 0; i < SIZE; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        long[] values = new long[percentiles.length];
+        if (count == 0) {
+            return values;
+        }
+        int index = 0;
+        long seen = 0;
+        for (int p = 0; p < percentiles.length; p++) {
+            long target = Math.max(1, (long) Math.ceil(percentiles[p] / 100.0 * count));
+            while (index < SIZE - 1 && seen + snapshot[index] < target) {
+                seen += snapshot[index++];
+            }
+            values[p] = Math.min(valueOf(index), getMax());
+        }
+        return values;
+    }
+
+    /**
+     * Clears everything recorded so far
+     */
+    public void reset() {
+        for (int i = 0; i < SIZE; i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+}
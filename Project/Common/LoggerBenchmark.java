@@ -0,0 +1,116 @@
+package Project.Common;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Compares the previous LoggerUtil formatting path with the current one.
+ * Reports time and bytes allocated per log call for:
+ * - formatting a record (old formatter vs CustomFormatter with and without
+ * caller capture)
+ * - a Room style INFO line when INFO is disabled (building the message anyway
+ * vs checking isLoggable() first)
+ * <p>
+ * Usage: java Project.Common.LoggerBenchmark [iterations]
+ * </p>
+ */
+public class LoggerBenchmark {
+    private static final String MESSAGE = "benchmark message with a typical chat length";
+
+    private static volatile Object sink; // keeps results alive so the JIT can't drop the work
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("benchmark.log");
+        config.setFileLogLevel(Level.WARNING); // INFO disabled for the "disabled" rows
+        config.setConsoleLogLevel(Level.WARNING);
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        LegacyFormatter legacy = new LegacyFormatter();
+        LoggerUtil.CustomFormatter current = new LoggerUtil.CustomFormatter();
+
+        Runnable legacyFormat = () -> sink = legacy.format(new LogRecord(Level.INFO, MESSAGE));
+        Runnable currentWithCaller = () -> {
+            config.setCaptureCallerClass(true);
+            sink = current.format(LoggerUtil.INSTANCE.createRecord(Level.INFO, MESSAGE, null));
+        };
+        Runnable currentNoCaller = () -> {
+            config.setCaptureCallerClass(false);
+            sink = current.format(LoggerUtil.INSTANCE.createRecord(Level.INFO, MESSAGE, null));
+        };
+        Runnable legacyDisabled = () -> {
+            // the old Room.info(String.format(...)), then Logger.log() creating a record the handlers reject
+            String line = String.format("Room[%s]: %s", "lobby",
+                    String.format("sending message to %s recipients: %s", 10, MESSAGE));
+            sink = new LogRecord(Level.INFO, line);
+        };
+        Runnable currentDisabled = () -> {
+            if (LoggerUtil.INSTANCE.isLoggable(Level.INFO)) {
+                sink = String.format("sending message to %s recipients: %s", 10, MESSAGE);
+            }
+        };
+
+        System.out.println(String.format("%-28s %12s %12s", "path", "ns/op", "bytes/op"));
+        measure("format, old", legacyFormat, iterations);
+        measure("format, caller captured", currentWithCaller, iterations);
+        measure("format, no caller", currentNoCaller, iterations);
+        measure("INFO disabled, old", legacyDisabled, iterations);
+        measure("INFO disabled, isLoggable", currentDisabled, iterations);
+    }
+
+    private static void measure(String name, Runnable op, int iterations) {
+        for (int i = 0; i < iterations / 5; i++) {
+            op.run(); // warm up
+        }
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytesBefore;
+        System.out.println(String.format("%-28s %12.1f %12s", name, elapsed / (double) iterations,
+                bytes < 0 ? "n/a" : String.valueOf(bytes / iterations)));
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) {
+            return threads.getThreadAllocatedBytes(Thread.currentThread().threadId());
+        }
+        return -1;
+    }
+
+    /**
+     * CustomFormatter as it was before caching: a new SimpleDateFormat, a full
+     * stack trace for the caller and String.format on every record
+     */
+    private static class LegacyFormatter extends Formatter {
+        @Override
+        public String format(LogRecord record) {
+            SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
+            String date = dateFormat.format(new Date(record.getMillis()));
+            String callingClass = getCallingClassName();
+            String source = callingClass != null ? callingClass : "unknown";
+            String level = "\u001B[32m" + record.getLevel().getName() + "\u001B[0m";
+            return String.format("%s [%s] (%s):\n\u001B[34m>\u001B[0m %s%s\n", date, source, level,
+                    formatMessage(record), "");
+        }
+
+        private static String getCallingClassName() {
+            String loggerUtilPackage = LoggerUtil.class.getPackage().getName();
+            for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+                String className = element.getClassName();
+                if (!className.startsWith("java.util.logging") && !className.startsWith(loggerUtilPackage)
+                        && !className.equals(Thread.class.getName())) {
+                    return className;
+                }
+            }
+            return null;
+        }
+    }
+}
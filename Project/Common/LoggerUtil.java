@@ -1,8 +1,9 @@
 package Project.Common;
 
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
@@ -18,9 +19,14 @@ import java.util.logging.Logger;
 public enum LoggerUtil {
     INSTANCE;
 
+    private static final StackWalker CALLER_WALKER = StackWalker.getInstance();
+    private static final String LOGGER_UTIL_PACKAGE = LoggerUtil.class.getPackageName();
+
     private Logger logger;
     private LoggerConfig config;
-    private boolean isConfigured = false;
+    private volatile boolean isConfigured = false;
+    private volatile int minimumLevel = Level.ALL.intValue(); // lowest level any handler accepts
+    private AsyncLogAppender appender = null; // set when LoggerConfig.asyncBufferSize > 0
 
     LoggerUtil() {
     }
@@ -39,9 +45,13 @@ public enum LoggerUtil {
      * CustomFormatter class for formatting the log messages.
      * This class formats the log messages to include the date, log level, source,
      * and message.
+     * Handlers call format() while holding their own lock, so the instance keeps
+     * one reusable StringBuilder and the last formatted date instead of
+     * allocating them per record.
      */
-    private static class CustomFormatter extends Formatter {
-        private static final String PATTERN = "MM/dd/yyyy HH:mm:ss";
+    static class CustomFormatter extends Formatter {
+        private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss")
+                .withZone(ZoneId.systemDefault());
         private static final String RESET = "\u001B[0m";
         private static final String RED = "\u001B[31m";
         private static final String GREEN = "\u001B[32m";
@@ -50,45 +60,58 @@ public enum LoggerUtil {
         private static final String PURPLE = "\u001B[35m";
         private static final String CYAN = "\u001B[36m";
         private static final String WHITE = "\u001B[37m";
+        private static final String PROMPT = BLUE + ">" + RESET + " ";
+        private static final int MAX_RETAINED_BUILDER = 16 * 1024; // don't hold on to a huge stack trace's buffer
+
+        private StringBuilder sb = new StringBuilder(256);
+        private long cachedSecond = Long.MIN_VALUE;
+        private String cachedDate = "";
 
         @Override
         public String format(LogRecord record) {
-            SimpleDateFormat dateFormat = new SimpleDateFormat(PATTERN);
-            String date = dateFormat.format(new Date(record.getMillis()));
-            String callingClass = getCallingClassName();
-            String source = callingClass != null ? callingClass
-                    : record.getSourceClassName() != null ? record.getSourceClassName() : "unknown";
-            String message = formatMessage(record);
-            String level = getColoredLevel(record.getLevel());
-            String throwable = "";
+            sb.setLength(0);
+            appendDate(record.getMillis());
+            // only set when LoggerConfig.captureCallerClass is on (see LoggerUtil.createRecord())
+            String source = record.getSourceClassName();
+            if (source != null) {
+                sb.append(" [").append(source).append(']');
+            }
+            sb.append(" (").append(getColoredLevel(record.getLevel())).append("):\n").append(PROMPT);
+            sb.append(record.getParameters() == null ? record.getMessage() : formatMessage(record));
             if (record.getThrown() != null) {
                 // Use stackTraceLimit from LoggerConfig to truncate stack trace
-                throwable = "\n"
-                        + getFormattedStackTrace(record.getThrown(), LoggerUtil.INSTANCE.config.getStackTraceLimit());
+                sb.append('\n');
+                appendStackTrace(sb, record.getThrown(), LoggerUtil.INSTANCE.config.getStackTraceLimit());
+            }
+            sb.append('\n');
+            String formatted = sb.toString();
+            if (sb.capacity() > MAX_RETAINED_BUILDER) {
+                sb = new StringBuilder(256);
             }
-            return String.format("%s [%s] (%s):\n\u001B[34m>\u001B[0m %s%s\n", date, source, level, message, throwable);
+            return formatted;
         }
 
         /**
-         * Determines the name of the class that called the logging method.
-         * 
-         * @return the name of the calling class
+         * The pattern has second resolution so consecutive records usually reuse
+         * the previous date string
          */
-        private static String getCallingClassName() {
-            String loggerUtilPackage = LoggerUtil.class.getPackage().getName();
-            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-            for (StackTraceElement element : stackTrace) {
-                String className = element.getClassName();
-                // Skip all classes in the logging framework and the package of LoggerUtil
-                if (!className.startsWith("java.util.logging") &&
-                        !className.startsWith(loggerUtilPackage) &&
-                        !className.equals(Thread.class.getName())) {
-                    return className;
-                }
+        private void appendDate(long millis) {
+            long second = Math.floorDiv(millis, 1000);
+            if (second != cachedSecond) {
+                cachedSecond = second;
+                cachedDate = DATE_FORMAT.format(Instant.ofEpochSecond(second));
             }
-            return null;
+            sb.append(cachedDate);
         }
 
+        private static final String SEVERE = RED + "SEVERE" + RESET;
+        private static final String WARNING = YELLOW + "WARNING" + RESET;
+        private static final String INFO = GREEN + "INFO" + RESET;
+        private static final String CONFIG = CYAN + "CONFIG" + RESET;
+        private static final String FINE = BLUE + "FINE" + RESET;
+        private static final String FINER = PURPLE + "FINER" + RESET;
+        private static final String FINEST = WHITE + "FINEST" + RESET;
+
         /**
          * Returns a colored log level string based on the severity.
          * 
@@ -98,36 +121,34 @@ public enum LoggerUtil {
         private static String getColoredLevel(Level level) {
             switch (level.getName()) {
                 case "SEVERE":
-                    return RED + level.getName() + RESET;
+                    return SEVERE;
                 case "WARNING":
-                    return YELLOW + level.getName() + RESET;
+                    return WARNING;
                 case "INFO":
-                    return GREEN + level.getName() + RESET;
+                    return INFO;
                 case "CONFIG":
-                    return CYAN + level.getName() + RESET;
+                    return CONFIG;
                 case "FINE":
-                    return BLUE + level.getName() + RESET;
+                    return FINE;
                 case "FINER":
-                    return PURPLE + level.getName() + RESET;
+                    return FINER;
                 case "FINEST":
-                    return WHITE + level.getName() + RESET;
+                    return FINEST;
                 default:
                     return level.getName();
             }
         }
 
         /**
-         * Generates the stack trace string from the given Throwable.
+         * Appends the stack trace string from the given Throwable.
          * The format includes the exception class name, message (if any),
          * and the stack trace elements up to the specified maxElements.
          * 
+         * @param sb          the builder to append to
          * @param throwable   the throwable to extract the stack trace from
          * @param maxElements the maximum number of stack trace elements to show
-         * @return the formatted stack trace as a string
          */
-        private static String getFormattedStackTrace(Throwable throwable, int maxElements) {
-            StringBuilder sb = new StringBuilder();
-
+        private static void appendStackTrace(StringBuilder sb, Throwable throwable, int maxElements) {
             // Add the exception class name and message
             sb.append(throwable.getClass().getName());
             if (throwable.getMessage() != null) {
@@ -150,9 +171,53 @@ public enum LoggerUtil {
             if (length > maxElements) {
                 sb.append("\t... ").append(length - maxElements).append(" more elements truncated ...\n");
             }
+        }
+    }
 
-            return sb.toString();
+    /**
+     * Determines the name of the class that called the logging method.
+     * Only used when LoggerConfig.captureCallerClass is on, walking the stack
+     * is the most expensive part of logging a record.
+     * 
+     * @return the name of the calling class
+     */
+    private static String getCallingClassName() {
+        return CALLER_WALKER.walk(frames -> frames
+                .map(StackWalker.StackFrame::getClassName)
+                // Skip all classes in the logging framework and the package of LoggerUtil
+                .filter(className -> !className.startsWith("java.util.logging")
+                        && !className.startsWith(LOGGER_UTIL_PACKAGE))
+                .findFirst()
+                .orElse(null));
+    }
+
+    /**
+     * Builds the LogRecord up front so JUL doesn't infer the caller itself
+     */
+    LogRecord createRecord(Level level, String message, Throwable throwable) {
+        LogRecord record = new LogRecord(level, message);
+        record.setLoggerName(logger.getName());
+        record.setThrown(throwable);
+        // setting it (even to null) stops LogRecord from walking the stack on its own
+        if (config.isCaptureCallerClass()) {
+            String callingClass = getCallingClassName();
+            record.setSourceClassName(callingClass != null ? callingClass : "unknown");
+        } else {
+            record.setSourceClassName(null);
         }
+        return record;
+    }
+
+    /**
+     * Checks whether a message at this level would be written anywhere.
+     * Use it to skip building expensive messages (String.format,
+     * concatenation) that would just be discarded.
+     * 
+     * @param level the level of the message
+     * @return true if at least one handler accepts the level
+     */
+    public boolean isLoggable(Level level) {
+        return level.intValue() >= minimumLevel && level != Level.OFF;
     }
 
     /**
@@ -182,15 +247,24 @@ public enum LoggerUtil {
                     true);
             fileHandler.setFormatter(new CustomFormatter());
             fileHandler.setLevel(config.getFileLogLevel());
-            logger.addHandler(fileHandler);
 
             // ConsoleHandler prints log messages to the console
             ConsoleHandler consoleHandler = new ConsoleHandler();
             consoleHandler.setFormatter(new CustomFormatter());
             consoleHandler.setLevel(config.getConsoleLogLevel());
-            logger.addHandler(consoleHandler);
+
+            if (config.getAsyncBufferSize() > 0) {
+                // the appender owns the handlers; they aren't attached to the Logger so JUL's own
+                // shutdown hook can't close them before shutdown() flushes the buffer
+                appender = new AsyncLogAppender(config.getAsyncBufferSize(), config.getAsyncOverflowPolicy(),
+                        config.getAsyncSampleRate(), fileHandler, consoleHandler);
+            } else {
+                logger.addHandler(fileHandler);
+                logger.addHandler(consoleHandler);
+            }
 
             logger.setLevel(Level.ALL);
+            minimumLevel = Math.min(config.getFileLogLevel().intValue(), config.getConsoleLogLevel().intValue());
             isConfigured = true;
         } catch (IOException e) {
             e.printStackTrace();
@@ -206,7 +280,9 @@ public enum LoggerUtil {
     public void log(Level level, String message) {
         if (!isConfigured)
             setupLogger();
-        logger.log(level, message);
+        if (!isLoggable(level))
+            return;
+        publish(createRecord(level, message, null));
     }
 
     /**
@@ -221,12 +297,14 @@ public enum LoggerUtil {
     public void log(Level level, Object message) {
         if (!isConfigured)
             setupLogger();
+        if (!isLoggable(level))
+            return;
         if (message instanceof String) {
-            logger.log(level, (String) message);
+            publish(createRecord(level, (String) message, null));
         } else if (message instanceof Throwable) {
-            logger.log(level, ((Throwable) message).getMessage(), (Throwable) message);
+            publish(createRecord(level, ((Throwable) message).getMessage(), (Throwable) message));
         } else {
-            logger.log(level, message.toString());
+            publish(createRecord(level, message.toString(), null));
         }
     }
 
@@ -240,7 +318,38 @@ public enum LoggerUtil {
     public void log(Level level, String message, Throwable throwable) {
         if (!isConfigured)
             setupLogger();
-        logger.log(level, message, throwable);
+        if (!isLoggable(level))
+            return;
+        publish(createRecord(level, message, throwable));
+    }
+
+    private void publish(LogRecord record) {
+        if (appender != null) {
+            appender.publish(record);
+        } else {
+            logger.log(record);
+        }
+    }
+
+    /**
+     * Waits for buffered (async) records to be written and flushes the log
+     * outputs.
+     */
+    public void flush() {
+        if (appender != null) {
+            appender.flush();
+        }
+    }
+
+    /**
+     * Writes any buffered records and closes the log outputs.
+     * Must be called on shutdown (e.g. from a shutdown hook) when async logging
+     * is enabled, otherwise buffered records can be lost.
+     */
+    public void shutdown() {
+        if (appender != null) {
+            appender.close();
+        }
     }
 
     /**
@@ -393,6 +502,10 @@ public enum LoggerUtil {
         private Level fileLogLevel = Level.ALL; // default log level for file
         private Level consoleLogLevel = Level.ALL; // default log level for console
         private int stackTraceLimit = 10; // default maximum number of stack trace elements
+        private boolean captureCallerClass = true; // walk the stack to show the calling class (costly)
+        private int asyncBufferSize = 0; // records buffered for the background writer, 0 writes on the caller's thread
+        private AsyncLogAppender.OverflowPolicy asyncOverflowPolicy = AsyncLogAppender.OverflowPolicy.BLOCK;
+        private int asyncSampleRate = 100; // SAMPLE keeps 1 in this many records while the buffer is full
 
         // Getters and Setters for each property
 
@@ -503,6 +616,85 @@ public enum LoggerUtil {
         public void setStackTraceLimit(int stackTraceLimit) {
             this.stackTraceLimit = stackTraceLimit;
         }
+
+        /**
+         * Gets whether each record shows the class that logged it.
+         * 
+         * @return true if the calling class is captured
+         */
+        public boolean isCaptureCallerClass() {
+            return captureCallerClass;
+        }
+
+        /**
+         * Sets whether each record shows the class that logged it.
+         * Capturing it walks the stack on every log call; turn it off on hot
+         * paths where messages already identify their source.
+         * 
+         * @param captureCallerClass true to capture the calling class
+         */
+        public void setCaptureCallerClass(boolean captureCallerClass) {
+            this.captureCallerClass = captureCallerClass;
+        }
+
+        /**
+         * Gets the async buffer size.
+         * 
+         * @return number of records buffered for the background writer, 0 if
+         *         logging is synchronous
+         */
+        public int getAsyncBufferSize() {
+            return asyncBufferSize;
+        }
+
+        /**
+         * Sets the async buffer size.
+         * Above 0 records are written by a background thread (see
+         * AsyncLogAppender) and LoggerUtil.shutdown() must be called on exit.
+         * 
+         * @param asyncBufferSize number of records to buffer, 0 for synchronous
+         *                        logging
+         */
+        public void setAsyncBufferSize(int asyncBufferSize) {
+            this.asyncBufferSize = asyncBufferSize;
+        }
+
+        /**
+         * Gets what happens when the async buffer is full.
+         * 
+         * @return the overflow policy
+         */
+        public AsyncLogAppender.OverflowPolicy getAsyncOverflowPolicy() {
+            return asyncOverflowPolicy;
+        }
+
+        /**
+         * Sets what happens when the async buffer is full.
+         * 
+         * @param asyncOverflowPolicy the overflow policy
+         */
+        public void setAsyncOverflowPolicy(AsyncLogAppender.OverflowPolicy asyncOverflowPolicy) {
+            this.asyncOverflowPolicy = asyncOverflowPolicy;
+        }
+
+        /**
+         * Gets how many records SAMPLE sees per record it keeps.
+         * 
+         * @return the sample rate
+         */
+        public int getAsyncSampleRate() {
+            return asyncSampleRate;
+        }
+
+        /**
+         * Sets how many records SAMPLE sees per record it keeps.
+         * 
+         * @param asyncSampleRate keep 1 in this many records while the buffer is
+         *                        full
+         */
+        public void setAsyncSampleRate(int asyncSampleRate) {
+            this.asyncSampleRate = asyncSampleRate;
+        }
     }
 
     /**
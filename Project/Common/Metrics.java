@@ -0,0 +1,197 @@
+package Project.Common;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of counters, gauges and latency histograms.
+ * Metrics are looked up once (keep the returned LongAdder/Histogram in a
+ * field) and then updated without going through the registry again.
+ * scrape() renders everything in the plain-text exposition format used by
+ * Prometheus, histograms as summaries in seconds.
+ * <p>
+ * Series that come and go (e.g. one per Room or connection) aren't registered;
+ * a collector writes them at scrape time with the write*() helpers.
+ * </p>
+ */
+public enum Metrics {
+    INSTANCE;
+
+    private static final double[] QUANTILES = { 50, 90, 99, 99.9 };
+    private static final String[] QUANTILE_LABELS = { "0.5", "0.9", "0.99", "0.999" };
+
+    // "name labels" -> metric, sorted so a name's series are grouped together
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+    private final CopyOnWriteArrayList<Consumer<StringBuilder>> collectors = new CopyOnWriteArrayList<>();
+
+    private record Metric(String name, String labels, String help, Object value) {
+    }
+
+    /**
+     * Gets or creates a counter
+     *
+     * @param name   e.g. "server_payloads_received_total"
+     * @param labels e.g. "type=\"MESSAGE\"" or "" for none
+     * @param help   one line description
+     * @return the counter to increment
+     */
+    public LongAdder counter(String name, String labels, String help) {
+        return (LongAdder) register(name, labels, help, new LongAdder()).value();
+    }
+
+    /**
+     * Gets or creates a latency histogram
+     *
+     * @param name   e.g. "server_payload_processing_seconds"
+     * @param labels e.g. "type=\"MESSAGE\"" or "" for none
+     * @param help   one line description
+     * @return the histogram to record nanoseconds into
+     */
+    public Histogram histogram(String name, String labels, String help) {
+        return (Histogram) register(name, labels, help, new Histogram()).value();
+    }
+
+    /**
+     * Registers a value that's read at scrape time (replaces one with the same
+     * name and labels)
+     *
+     * @param name   e.g. "server_rooms"
+     * @param labels e.g. "" for none
+     * @param help   one line description
+     * @param value  called on every scrape
+     */
+    public void gauge(String name, String labels, String help, LongSupplier value) {
+        metrics.put(key(name, labels), new Metric(name, labels, help, value));
+    }
+
+    /**
+     * Adds something that writes its own series on every scrape
+     *
+     * @param collector appends lines with the write*() helpers
+     */
+    public void addCollector(Consumer<StringBuilder> collector) {
+        collectors.add(collector);
+    }
+
+    public void removeCollector(Consumer<StringBuilder> collector) {
+        collectors.remove(collector);
+    }
+
+    private Metric register(String name, String labels, String help, Object value) {
+        return metrics.computeIfAbsent(key(name, labels), k -> new Metric(name, labels, help, value));
+    }
+
+    private static String key(String name, String labels) {
+        return name + ' ' + labels; // ' ' sorts before '_', "a" and "a_b" series don't interleave
+    }
+
+    /**
+     * Renders every metric in the plain-text exposition format
+     *
+     * @return the scrape body
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        String lastName = null;
+        for (Metric metric : metrics.values()) {
+            Object value = metric.value();
+            if (!metric.name().equals(lastName)) {
+                writeHeader(out, metric.name(), value instanceof Histogram ? "summary"
+                        : value instanceof LongAdder ? "counter" : "gauge", metric.help());
+                lastName = metric.name();
+            }
+            if (value instanceof Histogram histogram) {
+                writeHistogram(out, metric.name(), metric.labels(), histogram);
+            } else if (value instanceof LongAdder counter) {
+                writeValue(out, metric.name(), metric.labels(), counter.sum());
+            } else {
+                writeValue(out, metric.name(), metric.labels(), ((LongSupplier) value).getAsLong());
+            }
+        }
+        for (Consumer<StringBuilder> collector : collectors) {
+            try {
+                collector.accept(out);
+            } catch (Exception e) {
+                LoggerUtil.INSTANCE.warning("Metrics collector failed", e);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends the HELP and TYPE lines that go once before a metric's series
+     *
+     * @param out
+     * @param name
+     * @param type "counter", "gauge" or "summary"
+     * @param help one line description
+     */
+    public static void writeHeader(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Appends one "name{labels} value" line
+     *
+     * @param out
+     * @param name
+     * @param labels "" for none
+     * @param value
+     */
+    public static void writeValue(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Appends a histogram as a summary: quantiles, max, sum and count, in
+     * seconds
+     *
+     * @param out
+     * @param name
+     * @param labels    "" for none
+     * @param histogram
+     */
+    public static void writeHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long[] values = histogram.getValuesAtPercentiles(QUANTILES);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.append(name).append('{').append(prefix).append("quantile=\"")
+                    .append(QUANTILE_LABELS[i]).append("\"} ").append(seconds(values[i])).append('\n');
+        }
+        out.append(name).append("_max");
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(seconds(histogram.getMax())).append('\n');
+        out.append(name).append("_sum");
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(seconds(histogram.getSum())).append('\n');
+        writeValue(out, name + "_count", labels, histogram.getCount());
+    }
+
+    /**
+     * Escapes a label value (backslash, double quote and newline)
+     *
+     * @param value
+     * @return the value safe to put between quotes
+     */
+    public static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
@@ -0,0 +1,632 @@
+package Project.Common;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Length-prefixed binary wire format for Payloads sent between Client and
+ * Server.
+ * <p>
+ * Each frame is a 4 byte (big-endian) body length followed by the body.
+ * Framing gives both sides explicit message boundaries so a non-blocking
+ * transport can split the byte stream without a blocking ObjectInputStream.
+ * </p>
+ * <p>
+ * Body layout: PayloadType tag (ordinal), Payload class tag, clientId and
+ * message, followed by the fields of the concrete Payload subclass. Numbers
+ * are zigzag varints, counts are unsigned varints and Strings are an unsigned
+ * varint length (0 means null, otherwise length + 1) followed by UTF-8 bytes.
+ * A class tag the PayloadType is never sent as is a decode error, so the
+ * receiver can rely on the subclass it expects for each type.
+ * </p>
+ */
+public final class PayloadCodec {
+    public static final int HEADER_SIZE = 4; // size of the length prefix
+    public static final int MAX_FRAME_SIZE = 1024 * 1024; // 1MB, guards against corrupt/hostile lengths
+
+    // class tags, one per Payload subclass (the PayloadType alone isn't enough,
+    // e.g. ROOM_JOIN is a Payload from the Client and a ConnectionPayload from the Server)
+    private static final int PAYLOAD = 0;
+    private static final int CONNECTION = 1;
+    private static final int READY = 2;
+    private static final int XY = 3;
+    private static final int POINTS = 4;
+    private static final int PICK = 5;
+    private static final int ROOM_RESULTS = 6;
+    private static final int ROUND_RESULT = 7;
+    private static final int SCOREBOARD = 8;
+    private static final int RESUME = 9;
+    private static final int ROOM_SNAPSHOT = 10;
+
+    private static final PayloadType[] PAYLOAD_TYPES = PayloadType.values();
+    // per PayloadType ordinal, a bit for each class tag it can be sent as (see classTagsOf())
+    private static final int[] CLASS_TAGS = new int[PAYLOAD_TYPES.length];
+
+    static {
+        for (PayloadType type : PAYLOAD_TYPES) {
+            CLASS_TAGS[type.ordinal()] = classTagsOf(type);
+        }
+    }
+
+    private PayloadCodec() {
+    }
+
+    /**
+     * Encodes a Payload as a complete frame (length prefix included)
+     *
+     * @param payload
+     * @return bytes ready to be written to the socket
+     * @throws IOException if the Payload can't be encoded
+     */
+    public static byte[] encode(Payload payload) throws IOException {
+        Writer out = new Writer(64);
+        // reserve the length prefix, it's filled in once the body size is known
+        out.skip(HEADER_SIZE);
+        encodeBody(out, payload);
+        int length = out.size() - HEADER_SIZE;
+        if (length > MAX_FRAME_SIZE) {
+            throw new IOException(String.format("Payload too large (%s bytes)", length));
+        }
+        out.putInt(0, length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a frame body (without the length prefix) back into a Payload
+     *
+     * @param body   buffer holding the body
+     * @param offset where the body starts
+     * @param length size of the body
+     * @return the decoded Payload
+     * @throws IOException if the body isn't a valid Payload
+     */
+    public static Payload decode(byte[] body, int offset, int length) throws IOException {
+        Reader in = new Reader(body, offset, length);
+        int typeTag = in.readByte();
+        if (typeTag >= PAYLOAD_TYPES.length) {
+            throw new StreamCorruptedException("Unknown PayloadType tag " + typeTag);
+        }
+        PayloadType type = PAYLOAD_TYPES[typeTag];
+        int classTag = in.readByte();
+        if (classTag >= Integer.SIZE || (CLASS_TAGS[typeTag] & (1 << classTag)) == 0) {
+            // e.g. a plain Payload claiming to be CLIENT_CONNECT, the receiver would fail casting it
+            throw new StreamCorruptedException(String.format("%s can't have class tag %s", type, classTag));
+        }
+        long clientId = in.readVarLong();
+        String message = in.readString();
+        Payload payload;
+        switch (classTag) {
+            case PAYLOAD:
+                payload = new Payload();
+                break;
+            case CONNECTION:
+                ConnectionPayload cp = new ConnectionPayload();
+                cp.setClientName(in.readString());
+                cp.setConnect(in.readBoolean());
+                payload = cp;
+                break;
+            case RESUME:
+                ResumePayload resume = new ResumePayload();
+                resume.setClientName(in.readString());
+                resume.setConnect(in.readBoolean());
+                resume.setToken(in.readString());
+                resume.setReceived(in.readVarLong());
+                payload = resume;
+                break;
+            case READY:
+                ReadyPayload rp = new ReadyPayload();
+                rp.setReady(in.readBoolean());
+                payload = rp;
+                break;
+            case XY:
+                payload = new XYPayload(in.readVarInt(), in.readVarInt());
+                break;
+            case POINTS:
+                PointsPayload pp = new PointsPayload();
+                pp.setChangedPoints(in.readVarInt());
+                pp.setCurrentPoints(in.readVarInt());
+                payload = pp;
+                break;
+            case PICK:
+                PickPayload pickP = new PickPayload(null);
+                pickP.setPick(in.readString());
+                payload = pickP;
+                break;
+            case ROOM_RESULTS:
+                RoomResultsPayload rrp = new RoomResultsPayload();
+                int count = in.readLength();
+                if (count > in.remaining()) {
+                    throw new StreamCorruptedException("Invalid room count " + count);
+                }
+                List<String> rooms = new ArrayList<String>(count);
+                for (int i = 0; i < count; i++) {
+                    rooms.add(in.readString());
+                }
+                rrp.setRooms(rooms);
+                rrp.setCursor(in.readString());
+                rrp.setLimit(in.readVarInt());
+                rrp.setLast(in.readBoolean());
+                payload = rrp;
+                break;
+            case ROUND_RESULT:
+                payload = readRoundResult(in);
+                break;
+            case SCOREBOARD:
+                ScoreboardPayload sp = new ScoreboardPayload();
+                sp.setSnapshot(in.readBoolean());
+                int entries = readCount(in, "scoreboard");
+                LinkedHashMap<Long, Integer> points = new LinkedHashMap<Long, Integer>(entries * 2);
+                for (int i = 0; i < entries; i++) {
+                    points.put(in.readVarLong(), in.readVarInt());
+                }
+                sp.setPoints(points);
+                payload = sp;
+                break;
+            case ROOM_SNAPSHOT:
+                payload = readRoomSnapshot(in);
+                break;
+            default:
+                throw new StreamCorruptedException("Unknown Payload class tag " + classTag);
+        }
+        payload.setPayloadType(type);
+        payload.setClientId(clientId);
+        payload.setMessage(message);
+        if (in.remaining() != 0) {
+            throw new StreamCorruptedException(String.format("%s trailing bytes in %s frame", in.remaining(), type));
+        }
+        return payload;
+    }
+
+    /**
+     * The Payload subclasses each PayloadType is sent as, by either side
+     *
+     * @param type
+     * @return a bit per allowed class tag
+     */
+    private static int classTagsOf(PayloadType type) {
+        switch (type) {
+            case CLIENT_CONNECT:
+            case CLIENT_ID: // with the resume token when the Server resumes sessions
+                return tags(CONNECTION, RESUME);
+            case SYNC_CLIENT:
+                return tags(CONNECTION);
+            case DISCONNECT:
+            case ROOM_JOIN:
+                return tags(PAYLOAD, CONNECTION); // request from the Client, notice from the Server
+            case ROOM_LIST:
+                return tags(PAYLOAD, ROOM_RESULTS);
+            case READY:
+            case RESET_READY:
+                return tags(PAYLOAD, READY);
+            case SYNC_READY:
+            case TURN:
+                return tags(READY);
+            case POINTS:
+                return tags(POINTS);
+            case MOVE:
+            case GRID_DIMENSION:
+                return tags(XY);
+            case PICK:
+                return tags(PICK);
+            case ROUND_RESULT:
+                return tags(ROUND_RESULT);
+            case SCOREBOARD:
+                return tags(SCOREBOARD);
+            case ROOM_SNAPSHOT:
+                return tags(ROOM_SNAPSHOT);
+            default: // ROOM_CREATE, MESSAGE, PHASE, REJECTED, PING, PONG
+                return tags(PAYLOAD);
+        }
+    }
+
+    private static int tags(int... classTags) {
+        int bits = 0;
+        for (int classTag : classTags) {
+            bits |= 1 << classTag;
+        }
+        return bits;
+    }
+
+    private static void encodeBody(Writer out, Payload payload) throws IOException {
+        if (payload.getPayloadType() == null) {
+            throw new IOException("Payload is missing its PayloadType");
+        }
+        out.writeByte(payload.getPayloadType().ordinal());
+        Class<?> type = payload.getClass();
+        if (type == Payload.class) {
+            writeHeader(out, PAYLOAD, payload);
+        } else if (type == ConnectionPayload.class) {
+            ConnectionPayload cp = (ConnectionPayload) payload;
+            writeHeader(out, CONNECTION, payload);
+            out.writeString(cp.getClientName());
+            out.writeBoolean(cp.isConnect());
+        } else if (type == ResumePayload.class) {
+            ResumePayload resume = (ResumePayload) payload;
+            writeHeader(out, RESUME, payload);
+            out.writeString(resume.getClientName());
+            out.writeBoolean(resume.isConnect());
+            out.writeString(resume.getToken());
+            out.writeVarLong(resume.getReceived());
+        } else if (type == ReadyPayload.class) {
+            writeHeader(out, READY, payload);
+            out.writeBoolean(((ReadyPayload) payload).isReady());
+        } else if (type == XYPayload.class) {
+            XYPayload xy = (XYPayload) payload;
+            writeHeader(out, XY, payload);
+            out.writeVarInt(xy.getX());
+            out.writeVarInt(xy.getY());
+        } else if (type == PointsPayload.class) {
+            PointsPayload pp = (PointsPayload) payload;
+            writeHeader(out, POINTS, payload);
+            out.writeVarInt(pp.getChangedPoints());
+            out.writeVarInt(pp.getCurrentPoints());
+        } else if (type == PickPayload.class) {
+            writeHeader(out, PICK, payload);
+            out.writeString(((PickPayload) payload).getPick());
+        } else if (type == RoomResultsPayload.class) {
+            RoomResultsPayload rrp = (RoomResultsPayload) payload;
+            List<String> rooms = rrp.getRooms();
+            writeHeader(out, ROOM_RESULTS, payload);
+            if (rooms == null) {
+                out.writeLength(0);
+            } else {
+                out.writeLength(rooms.size());
+                for (String room : rooms) {
+                    out.writeString(room);
+                }
+            }
+            out.writeString(rrp.getCursor());
+            out.writeVarInt(rrp.getLimit());
+            out.writeBoolean(rrp.isLast());
+        } else if (type == RoundResultPayload.class) {
+            writeHeader(out, ROUND_RESULT, payload);
+            writeRoundResult(out, (RoundResultPayload) payload);
+        } else if (type == ScoreboardPayload.class) {
+            ScoreboardPayload sp = (ScoreboardPayload) payload;
+            writeHeader(out, SCOREBOARD, payload);
+            out.writeBoolean(sp.isSnapshot());
+            out.writeLength(sp.getPoints().size());
+            for (Map.Entry<Long, Integer> points : sp.getPoints().entrySet()) {
+                out.writeVarLong(points.getKey());
+                out.writeVarInt(points.getValue());
+            }
+        } else if (type == RoomSnapshotPayload.class) {
+            writeHeader(out, ROOM_SNAPSHOT, payload);
+            writeRoomSnapshot(out, (RoomSnapshotPayload) payload);
+        } else {
+            throw new IOException("No wire encoding for " + type.getName());
+        }
+    }
+
+    /**
+     * picks (clientId, pick), eliminated clientIds, then points (clientId,
+     * delta), each prefixed by its count
+     */
+    private static void writeRoundResult(Writer out, RoundResultPayload rp) {
+        out.writeLength(rp.getPicks().size());
+        for (Map.Entry<Long, String> pick : rp.getPicks().entrySet()) {
+            out.writeVarLong(pick.getKey());
+            out.writeString(pick.getValue());
+        }
+        out.writeLength(rp.getEliminated().size());
+        for (long clientId : rp.getEliminated()) {
+            out.writeVarLong(clientId);
+        }
+        out.writeLength(rp.getPointsChanged().size());
+        for (Map.Entry<Long, Integer> points : rp.getPointsChanged().entrySet()) {
+            out.writeVarLong(points.getKey());
+            out.writeVarInt(points.getValue());
+        }
+    }
+
+    private static RoundResultPayload readRoundResult(Reader in) throws IOException {
+        RoundResultPayload rp = new RoundResultPayload();
+        int count = readCount(in, "pick");
+        LinkedHashMap<Long, String> picks = new LinkedHashMap<Long, String>(count * 2);
+        for (int i = 0; i < count; i++) {
+            picks.put(in.readVarLong(), in.readString());
+        }
+        rp.setPicks(picks);
+        count = readCount(in, "eliminated");
+        ArrayList<Long> eliminated = new ArrayList<Long>(count);
+        for (int i = 0; i < count; i++) {
+            eliminated.add(in.readVarLong());
+        }
+        rp.setEliminated(eliminated);
+        count = readCount(in, "points");
+        LinkedHashMap<Long, Integer> points = new LinkedHashMap<Long, Integer>(count * 2);
+        for (int i = 0; i < count; i++) {
+            points.put(in.readVarLong(), in.readVarInt());
+        }
+        rp.setPointsChanged(points);
+        return rp;
+    }
+
+    /**
+     * members (clientId, name) prefixed by their count, the ready and took turn
+     * bitsets, then points prefixed by their count
+     */
+    private static void writeRoomSnapshot(Writer out, RoomSnapshotPayload rsp) {
+        out.writeLength(rsp.getClientIds().size());
+        for (int i = 0; i < rsp.getClientIds().size(); i++) {
+            out.writeVarLong(rsp.getClientIds().get(i));
+            out.writeString(rsp.getClientNames().get(i));
+        }
+        out.writeBits(rsp.getReady());
+        out.writeBits(rsp.getTookTurn());
+        out.writeLength(rsp.getPoints().size());
+        for (int points : rsp.getPoints()) {
+            out.writeVarInt(points);
+        }
+    }
+
+    private static RoomSnapshotPayload readRoomSnapshot(Reader in) throws IOException {
+        RoomSnapshotPayload rsp = new RoomSnapshotPayload();
+        int count = readCount(in, "member");
+        for (int i = 0; i < count; i++) {
+            rsp.addMember(in.readVarLong(), in.readString());
+        }
+        rsp.setReady(in.readBits());
+        rsp.setTookTurn(in.readBits());
+        count = readCount(in, "points");
+        ArrayList<Integer> points = new ArrayList<Integer>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(in.readVarInt());
+        }
+        rsp.setPoints(points);
+        return rsp;
+    }
+
+    private static int readCount(Reader in, String what) throws IOException {
+        int count = in.readLength();
+        if (count > in.remaining()) { // every entry takes at least a byte
+            throw new StreamCorruptedException(String.format("Invalid %s count %s", what, count));
+        }
+        return count;
+    }
+
+    private static void writeHeader(Writer out, int classTag, Payload payload) {
+        out.writeByte(classTag);
+        out.writeVarLong(payload.getClientId());
+        out.writeString(payload.getMessage());
+    }
+
+    /**
+     * Validates a length prefix read from the wire
+     *
+     * @param length
+     * @throws StreamCorruptedException if it's outside the allowed range
+     */
+    public static void checkFrameLength(int length) throws StreamCorruptedException {
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new StreamCorruptedException(String.format("Invalid frame length %s", length));
+        }
+    }
+
+    /**
+     * Writes a single framed Payload and flushes the stream
+     *
+     * @param out
+     * @param payload
+     * @throws IOException
+     */
+    public static void writeFrame(DataOutputStream out, Payload payload) throws IOException {
+        out.write(encode(payload));
+        out.flush();
+    }
+
+    /**
+     * Blocking read of the next framed Payload
+     *
+     * @param in
+     * @return the decoded Payload
+     * @throws IOException EOFException when the other side closed the stream
+     */
+    public static Payload readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        checkFrameLength(length);
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return decode(body, 0, length);
+    }
+
+    /**
+     * Growable byte array with the primitive encoders used by the wire format
+     */
+    private static final class Writer {
+        private byte[] buffer;
+        private int size;
+
+        Writer(int initialCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        void skip(int count) {
+            ensureCapacity(count);
+            size += count;
+        }
+
+        void putInt(int index, int value) {
+            buffer[index] = (byte) (value >>> 24);
+            buffer[index + 1] = (byte) (value >>> 16);
+            buffer[index + 2] = (byte) (value >>> 8);
+            buffer[index + 3] = (byte) value;
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value);
+        }
+
+        void writeVarLong(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63)); // zigzag so small negatives stay small
+        }
+
+        void writeLength(int length) {
+            writeUnsigned(length);
+        }
+
+        private void writeUnsigned(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeLength(0);
+                return;
+            }
+            int length = value.length();
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++) {
+                ascii = value.charAt(i) < 0x80;
+            }
+            if (ascii) {
+                // fast path, no intermediate byte[]
+                writeLength(length + 1);
+                ensureCapacity(length);
+                for (int i = 0; i < length; i++) {
+                    buffer[size++] = (byte) value.charAt(i);
+                }
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeLength(utf8.length + 1);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, buffer, size, utf8.length);
+            size += utf8.length;
+        }
+
+        /**
+         * byte length then the bits, little-endian (see BitSet.toByteArray())
+         */
+        void writeBits(BitSet bits) {
+            byte[] bytes = bits.toByteArray();
+            writeLength(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * Bounds-checked reader over a single frame body
+     */
+    private static final class Reader {
+        private final byte[] buffer;
+        private final int limit;
+        private int position;
+
+        Reader(byte[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.limit = offset + length;
+        }
+
+        int remaining() {
+            return limit - position;
+        }
+
+        int readByte() throws StreamCorruptedException {
+            if (position >= limit) {
+                throw new StreamCorruptedException("Frame ended early");
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        boolean readBoolean() throws StreamCorruptedException {
+            return readByte() != 0;
+        }
+
+        int readVarInt() throws StreamCorruptedException {
+            long value = readVarLong();
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new StreamCorruptedException("Varint out of int range");
+            }
+            return (int) value;
+        }
+
+        long readVarLong() throws StreamCorruptedException {
+            long zigzag = readUnsigned();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        int readLength() throws StreamCorruptedException {
+            long length = readUnsigned();
+            if (length > MAX_FRAME_SIZE) {
+                throw new StreamCorruptedException("Length out of range");
+            }
+            return (int) length;
+        }
+
+        private long readUnsigned() throws StreamCorruptedException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Malformed varint");
+        }
+
+        String readString() throws StreamCorruptedException {
+            int length = readLength() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > remaining()) {
+                throw new StreamCorruptedException("String length exceeds frame");
+            }
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        BitSet readBits() throws StreamCorruptedException {
+            int length = readLength();
+            if (length > remaining()) {
+                throw new StreamCorruptedException("Bitset length exceeds frame");
+            }
+            BitSet bits = BitSet.valueOf(Arrays.copyOfRange(buffer, position, position + length));
+            position += length;
+            return bits;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package Project.Common;
 
+/**
+ * Note: the ordinal is used as the wire tag by PayloadCodec, only append new types at the end
+ */
 public enum PayloadType {
     CLIENT_CONNECT, // client requesting to connect to server (passing of initialization data [name])
     CLIENT_ID,  // server sending client id
@@ -18,4 +21,10 @@ public enum PayloadType {
     GRID_DIMENSION, //syncs grid dimension
     TURN, //syncs turn data
     PICK,
+    ROUND_RESULT, // picks, eliminations and points changes of a finished round
+    SCOREBOARD, // current points of the players that changed (or everyone for a snapshot)
+    REJECTED, // server turning a connection away (e.g. full), the socket closes right after
+    PING, // heartbeat, whoever receives it answers with PONG
+    PONG, // heartbeat answer
+    ROOM_SNAPSHOT, // everyone in the room (ids, names, ready, turn, points) for a client that just joined
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ public class PickPayload extends Payload {
 
     public PickPayload(String pick){
         setPayloadType(PayloadType.PICK);
+        this.pick = pick;
     }
 
     public String getPick(){
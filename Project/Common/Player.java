@@ -51,9 +51,20 @@ public class Player {
     public void add(){
         this.points++;
     }
+
+    public void setPoints(int points){
+        this.points = points;
+    }
+
+    public void addPoints(int points){
+        this.points += points;
+    }
     public String getPick(){
         return pick;
     }
+    public void setPick(String pick){
+        this.pick = pick;
+    }
 
     /**
      * Resets all of the data (this is destructive).
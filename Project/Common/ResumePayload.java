@@ -0,0 +1,40 @@
+package Project.Common;
+
+/**
+ * CLIENT_CONNECT from a Client that's reconnecting and wants its old session
+ * back: the resume token it got with its CLIENT_ID and how many Payloads it
+ * received in that session (not counting CLIENT_ID). If the Server can't
+ * resume it, the name is used to start a new session like a normal
+ * CLIENT_CONNECT.
+ * The Server's CLIENT_ID is one too, to hand the Client its token (received
+ * isn't used there).
+ */
+public class ResumePayload extends ConnectionPayload {
+    private String token;
+    private long received;
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    @Override
+    public String toString() {
+        // the token is as good as the session, keep it out of the logs
+        if (getPayloadType() != PayloadType.CLIENT_CONNECT) {
+            return super.toString();
+        }
+        return super.toString() + String.format(" Resume after [%s] received", received);
+    }
+}
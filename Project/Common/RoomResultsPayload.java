@@ -3,8 +3,19 @@ package Project.Common;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * ROOM_LIST request and response.
+ * Request (Client): the query in the message, plus the cursor to continue
+ * from and the page size (0 for the Server's default).
+ * Response (Server): one page of rooms per Payload. A request is answered with
+ * a few pages in a row, the final one is marked last; its cursor is where the
+ * next request continues (null once every match was sent).
+ */
 public class RoomResultsPayload extends Payload {
     private List<String> rooms = new ArrayList<String>();
+    private String cursor;
+    private int limit;
+    private boolean last = true;
 
     public RoomResultsPayload() {
         setPayloadType(PayloadType.ROOM_LIST);
@@ -17,4 +28,28 @@ public class RoomResultsPayload extends Payload {
     public void setRooms(List<String> rooms) {
         this.rooms = rooms;
     }
-}
\ No newline at end of file
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public boolean isLast() {
+        return last;
+    }
+
+    public void setLast(boolean last) {
+        this.last = last;
+    }
+}
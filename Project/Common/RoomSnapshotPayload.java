@@ -0,0 +1,80 @@
+package Project.Common;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * Everyone in a room in one Payload, sent to a client when it joins instead
+ * of a SYNC_CLIENT and SYNC_READY per member.
+ * Members are listed by index: clientIds and clientNames line up, ready and
+ * tookTurn have the member's index set when it's ready / took its turn, and
+ * points lines up too (empty in rooms without a game, e.g. the lobby).
+ */
+public class RoomSnapshotPayload extends Payload {
+    private ArrayList<Long> clientIds = new ArrayList<Long>();
+    private ArrayList<String> clientNames = new ArrayList<String>();
+    private BitSet ready = new BitSet();
+    private BitSet tookTurn = new BitSet();
+    private ArrayList<Integer> points = new ArrayList<Integer>();
+
+    public RoomSnapshotPayload() {
+        setPayloadType(PayloadType.ROOM_SNAPSHOT);
+    }
+
+    /**
+     * @param clientId
+     * @param clientName
+     * @return the member's index
+     */
+    public int addMember(long clientId, String clientName) {
+        clientIds.add(clientId);
+        clientNames.add(clientName);
+        return clientIds.size() - 1;
+    }
+
+    public ArrayList<Long> getClientIds() {
+        return clientIds;
+    }
+
+    public void setClientIds(ArrayList<Long> clientIds) {
+        this.clientIds = clientIds;
+    }
+
+    public ArrayList<String> getClientNames() {
+        return clientNames;
+    }
+
+    public void setClientNames(ArrayList<String> clientNames) {
+        this.clientNames = clientNames;
+    }
+
+    public BitSet getReady() {
+        return ready;
+    }
+
+    public void setReady(BitSet ready) {
+        this.ready = ready;
+    }
+
+    public BitSet getTookTurn() {
+        return tookTurn;
+    }
+
+    public void setTookTurn(BitSet tookTurn) {
+        this.tookTurn = tookTurn;
+    }
+
+    public ArrayList<Integer> getPoints() {
+        return points;
+    }
+
+    public void setPoints(ArrayList<Integer> points) {
+        this.points = points;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s members [%s] ready [%s] tookTurn [%s]", super.toString(), clientIds.size(),
+                ready.cardinality(), tookTurn.cardinality());
+    }
+}
@@ -0,0 +1,50 @@
+package Project.Common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Everything that happened in one round in a single Payload: what each player
+ * picked, who got eliminated and whose points changed.
+ * The Client renders the results from this instead of the Server sending a
+ * summary message plus a POINTS Payload per winner.
+ */
+public class RoundResultPayload extends Payload {
+    private LinkedHashMap<Long, String> picks = new LinkedHashMap<Long, String>(); // clientId -> "r", "p" or "s"
+    private ArrayList<Long> eliminated = new ArrayList<Long>();
+    private LinkedHashMap<Long, Integer> pointsChanged = new LinkedHashMap<Long, Integer>(); // clientId -> delta
+
+    public RoundResultPayload() {
+        setPayloadType(PayloadType.ROUND_RESULT);
+    }
+
+    public LinkedHashMap<Long, String> getPicks() {
+        return picks;
+    }
+
+    public void setPicks(LinkedHashMap<Long, String> picks) {
+        this.picks = picks;
+    }
+
+    public ArrayList<Long> getEliminated() {
+        return eliminated;
+    }
+
+    public void setEliminated(ArrayList<Long> eliminated) {
+        this.eliminated = eliminated;
+    }
+
+    public LinkedHashMap<Long, Integer> getPointsChanged() {
+        return pointsChanged;
+    }
+
+    public void setPointsChanged(LinkedHashMap<Long, Integer> pointsChanged) {
+        this.pointsChanged = pointsChanged;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s Picks: %s Eliminated: %s Points: %s", super.toString(), picks.size(),
+                eliminated, pointsChanged);
+    }
+}
@@ -0,0 +1,39 @@
+package Project.Common;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Current points of several players in one Payload.
+ * After a round the Server only sends the players whose points changed; a
+ * snapshot has everyone in the room (sent to late joiners and every few
+ * rounds so a Client that missed an update catches up).
+ */
+public class ScoreboardPayload extends Payload {
+    private LinkedHashMap<Long, Integer> points = new LinkedHashMap<Long, Integer>(); // clientId -> current points
+    private boolean snapshot;
+
+    public ScoreboardPayload() {
+        setPayloadType(PayloadType.SCOREBOARD);
+    }
+
+    public LinkedHashMap<Long, Integer> getPoints() {
+        return points;
+    }
+
+    public void setPoints(LinkedHashMap<Long, Integer> points) {
+        this.points = points;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s: %s", super.toString(), snapshot ? "Snapshot" : "Changed", points);
+    }
+}
@@ -2,20 +2,36 @@ package Project.Common;
 
 /* Originally based off of https://gist.github.com/MattToegel/c55747f26c5092d6362678d5b1729ec6 */
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
- * Simple countdown timer demo of java.util.Timer facility.
+ * Simple countdown timer.
  * Formerly called Countdown
+ * <p>
+ * All TimedEvents share one small scheduler pool instead of each creating a
+ * java.util.Timer (and with it a dedicated thread), so thousands of active
+ * timers cost a few threads total.
+ * </p>
  */
 
 public class TimedEvent {
-    private int secondsRemaining;
-    private Runnable expireCallback = null;
-    private Consumer<Integer> tickCallback = null;
-    final private Timer timer;
+    // a couple of threads so a slow callback in one room doesn't delay every other timer
+    private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler(
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    private static final Histogram TICK_LAG = Metrics.INSTANCE.histogram("timed_event_tick_lag_seconds", "",
+            "How late TimedEvent ticks run compared to their schedule");
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private volatile int secondsRemaining;
+    private volatile Runnable expireCallback = null;
+    private volatile Consumer<Integer> tickCallback = null;
+    private volatile ScheduledFuture<?> task; // set after scheduling, tick() runs on a scheduler thread
+    private final long startNanos;
+    private long ticks = 0; // only touched by tick()
 
     /**
      * Create a TimedEvent to trigger the passed in callback after a set duration
@@ -36,23 +52,43 @@ public class TimedEvent {
      * @param durationInSeconds
      */
     public TimedEvent(int durationInSeconds) {
-        timer = new Timer();
         secondsRemaining = durationInSeconds;
-        timer.scheduleAtFixedRate(new TimerTask() {
-            public void run() {
-                secondsRemaining--;
-                if (tickCallback != null) {
-                    tickCallback.accept(secondsRemaining);
-                }
-                if (secondsRemaining <= 0) {
-                    timer.cancel();
-                    secondsRemaining = 0;
-                    if (expireCallback != null) {
-                        expireCallback.run();
-                    }
+        startNanos = System.nanoTime();
+        task = SCHEDULER.scheduleAtFixedRate(this::tick, 1000, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler(int threads) {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(threads,
+                Thread.ofPlatform().name("TimedEvent-", 0).daemon(true).factory());
+        scheduler.setRemoveOnCancelPolicy(true); // cancelled timers don't linger in the queue
+        return scheduler;
+    }
+
+    /**
+     * Runs once per second on the shared scheduler; a fixed-rate task never
+     * overlaps itself so ticks of one TimedEvent stay in order
+     */
+    private void tick() {
+        ticks++;
+        TICK_LAG.record(System.nanoTime() - (startNanos + ticks * TICK_NANOS));
+        try {
+            secondsRemaining--;
+            Consumer<Integer> onTick = tickCallback;
+            if (onTick != null) {
+                onTick.accept(secondsRemaining);
+            }
+            if (secondsRemaining <= 0) {
+                task.cancel(false);
+                secondsRemaining = 0;
+                Runnable onExpire = expireCallback;
+                if (onExpire != null) {
+                    onExpire.run();
                 }
             }
-        }, 1000, 1000);
+        } catch (Exception e) {
+            // an exception would silently stop the fixed-rate task (and never expire it)
+            LoggerUtil.INSTANCE.severe("TimedEvent callback failed", e);
+        }
     }
 
     /**
@@ -80,7 +116,7 @@ public class TimedEvent {
     public void cancel() {
         expireCallback = null;
         tickCallback = null;
-        timer.cancel();
+        task.cancel(false);
     }
 
     /**
@@ -95,16 +131,21 @@ public class TimedEvent {
     }
 
     /**
-     * This is just for testing/demo
+     * This is just for testing/demo; waits for the timer since the scheduler
+     * threads are daemons
      * 
      * @param args
+     * @throws InterruptedException
      */
-    public static void main(String args[]) {
+    public static void main(String args[]) throws InterruptedException {
+        CountDownLatch expired = new CountDownLatch(1);
         TimedEvent cd = new TimedEvent(10, () -> {
             System.out.println("Time expired");
+            expired.countDown();
         });
         cd.setTickCallback((tick) -> {
             System.out.println("Tick: " + tick);
         });
+        expired.await();
     }
 }
\ No newline at end of file
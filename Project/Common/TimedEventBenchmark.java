@@ -0,0 +1,89 @@
+package Project.Common;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark of many concurrent countdowns.
+ * Starts N TimedEvents (default 10,000, like ~3,300 GameRooms each holding a
+ * ready, round and turn timer), lets them tick for a few seconds, then cancels
+ * them. Reports live threads, creation/cancel cost and how late ticks fire.
+ * "legacy" runs the same load with one java.util.Timer per countdown (the
+ * previous TimedEvent) for comparison.
+ * <p>
+ * Usage: java Project.Common.TimedEventBenchmark [timers] [legacy]
+ * </p>
+ */
+public class TimedEventBenchmark {
+    private static final int SECONDS_TO_TICK = 5;
+
+    private static final LongAdder ticks = new LongAdder();
+    private static final LongAdder totalLateness = new LongAdder();
+    private static final AtomicLong maxLateness = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        int timers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        boolean legacy = args.length > 1 && args[1].equalsIgnoreCase("legacy");
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        long start = System.nanoTime();
+        List<Runnable> cancels = new ArrayList<>(timers);
+        for (int i = 0; i < timers; i++) {
+            cancels.add(legacy ? startLegacy() : startTimedEvent());
+        }
+        double createMillis = (System.nanoTime() - start) / 1_000_000.0;
+        int threadsDuring = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        Thread.sleep(SECONDS_TO_TICK * 1000L + 500);
+
+        start = System.nanoTime();
+        cancels.forEach(Runnable::run);
+        double cancelMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        long tickCount = ticks.sum();
+        System.out.println(String.format("%s, %s timers", legacy ? "java.util.Timer per event" : "TimedEvent",
+                timers));
+        System.out.println(String.format("  threads        %s -> %s", threadsBefore, threadsDuring));
+        System.out.println(String.format("  create         %.1fms (%.2fus each)", createMillis,
+                createMillis * 1000 / timers));
+        System.out.println(String.format("  cancel         %.1fms (%.2fus each)", cancelMillis,
+                cancelMillis * 1000 / timers));
+        System.out.println(String.format("  ticks          %s of %s expected", tickCount,
+                (long) timers * SECONDS_TO_TICK));
+        System.out.println(String.format("  tick lateness  avg %.2fms, max %sms",
+                tickCount == 0 ? 0 : totalLateness.sum() / (double) tickCount, maxLateness.get()));
+        System.exit(0); // legacy Timer threads aren't daemons
+    }
+
+    private static Runnable startTimedEvent() {
+        long created = System.currentTimeMillis();
+        TimedEvent event = new TimedEvent(SECONDS_TO_TICK * 2);
+        event.setTickCallback(remaining -> onTick(created, SECONDS_TO_TICK * 2 - remaining));
+        return event::cancel;
+    }
+
+    private static Runnable startLegacy() {
+        long created = System.currentTimeMillis();
+        Timer timer = new Timer();
+        timer.scheduleAtFixedRate(new TimerTask() {
+            private int elapsed = 0;
+
+            public void run() {
+                onTick(created, ++elapsed);
+            }
+        }, 1000, 1000);
+        return timer::cancel;
+    }
+
+    private static void onTick(long created, int elapsedSeconds) {
+        long lateness = Math.max(0, System.currentTimeMillis() - (created + elapsedSeconds * 1000L));
+        ticks.increment();
+        totalLateness.add(lateness);
+        maxLateness.accumulateAndGet(lateness, Math::max);
+    }
+}
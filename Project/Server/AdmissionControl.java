@@ -0,0 +1,150 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import Project.Common.Frame;
+import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
+
+/**
+ * Decides which accepted sockets become clients, before any ServerThread,
+ * reader thread or buffers exist for them:
+ * - at most maxConnections are open at once; the rest get a REJECTED Payload
+ * (encoded once up front) and are closed right away
+ * - an admitted connection that doesn't send CLIENT_CONNECT within the
+ * handshake timeout is disconnected
+ * Limits come from ServerConfig.
+ */
+public class AdmissionControl {
+    private static final ScheduledThreadPoolExecutor HANDSHAKE_TIMER = createTimer();
+    private static final LongAdder ACCEPTED = Metrics.INSTANCE.counter("server_connections_accepted_total", "",
+            "Connections admitted by the accept loop");
+    private static final LongAdder REJECTED = Metrics.INSTANCE.counter("server_connections_rejected_total", "",
+            "Connections turned away because the Server was full");
+    private static final LongAdder HANDSHAKE_TIMEOUTS = Metrics.INSTANCE.counter("server_handshake_timeouts_total",
+            "", "Connections closed for not sending CLIENT_CONNECT in time");
+
+    private final int maxConnections;
+    private final long handshakeTimeoutMillis;
+    private final AtomicInteger open = new AtomicInteger();
+    private final Frame rejection;
+
+    /**
+     * @param config connection limit and handshake timeout
+     */
+    public AdmissionControl(ServerConfig config) {
+        this.maxConnections = config.getMaxConnections() > 0 ? config.getMaxConnections() : Integer.MAX_VALUE;
+        this.handshakeTimeoutMillis = config.getHandshakeTimeoutMillis();
+        Payload p = new Payload();
+        p.setPayloadType(PayloadType.REJECTED);
+        p.setMessage("Server is full, try again later");
+        try {
+            rejection = Frame.of(p);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode the rejection Payload", e);
+        }
+        Metrics.INSTANCE.gauge("server_admitted_connections", "", "Connections currently admitted", open::get);
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().name("HandshakeTimer").daemon(true).factory());
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * Takes a connection slot if one is free
+     *
+     * @return true if the connection may proceed, false if it has to be
+     *         rejected
+     */
+    public boolean tryAdmit() {
+        int current;
+        do {
+            current = open.get();
+            if (current >= maxConnections) {
+                return false;
+            }
+        } while (!open.compareAndSet(current, current + 1));
+        ACCEPTED.increment();
+        return true;
+    }
+
+    /**
+     * Gives back the slot of an admitted connection (once per connection)
+     */
+    public void release() {
+        open.decrementAndGet();
+    }
+
+    /**
+     * @return connections currently admitted
+     */
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    /**
+     * Sends the rejection and closes the socket (accept thread, blocking
+     * transport)
+     *
+     * @param socket
+     */
+    public void reject(Socket socket) {
+        REJECTED.increment();
+        try (socket) {
+            rejection.writeTo(socket.getOutputStream()); // a fresh socket's buffer takes it without blocking
+            socket.shutdownOutput();
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.fine("Could not send rejection");
+        }
+    }
+
+    /**
+     * Sends the rejection and closes the channel (accept thread, NIO transport;
+     * the channel is still in blocking mode)
+     *
+     * @param channel
+     */
+    public void reject(SocketChannel channel) {
+        REJECTED.increment();
+        try (channel) {
+            ByteBuffer buffer = rejection.buffer();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.shutdownOutput();
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.fine("Could not send rejection");
+        }
+    }
+
+    /**
+     * Disconnects the client if it hasn't sent CLIENT_CONNECT by the handshake
+     * timeout
+     *
+     * @param client a just admitted client
+     */
+    public void watchHandshake(ServerThread client) {
+        if (handshakeTimeoutMillis <= 0) {
+            return;
+        }
+        HANDSHAKE_TIMER.schedule(() -> {
+            if (client.getClientName() == null && client.isRunning) {
+                HANDSHAKE_TIMEOUTS.increment();
+                LoggerUtil.INSTANCE.fine("Handshake timed out");
+                client.disconnect();
+            }
+        }, handshakeTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -1,10 +1,15 @@
 
 package Project.Server;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.concurrent.ConcurrentHashMap;
 
+import Project.Common.Frame;
 import Project.Common.LoggerUtil;
+import Project.Common.Payload;
 import Project.Common.Phase;
+import Project.Common.RoomSnapshotPayload;
 import Project.Common.TimedEvent;
 
 /**
@@ -74,7 +79,7 @@ public abstract class BaseGameRoom extends Room {
     protected abstract void onClientRemoved(ServerPlayer client);
 
     @Override
-    protected synchronized void addClient(ServerThread client) {
+    protected void addClient(ServerThread client) {
         if (!isRunning) { // block action if Room isn't running
             return;
         }
@@ -92,7 +97,7 @@ public abstract class BaseGameRoom extends Room {
     }
 
     @Override
-    protected synchronized void removedClient(ServerThread client) {
+    protected void removedClient(ServerThread client) {
         if (!isRunning) { // block action if Room isn't running
             return;
         }
@@ -105,7 +110,20 @@ public abstract class BaseGameRoom extends Room {
     }
 
     @Override
-    protected synchronized void disconnect(ServerThread client){
+    protected boolean resumeClient(ServerThread parked, ServerThread client, long received) {
+        if (!super.resumeClient(parked, client, received)) {
+            return false;
+        }
+        // ready, points, pick and eliminated stay as they were
+        ServerPlayer sp = playersInRoom.get(client.getClientId());
+        if (sp != null) {
+            sp.setServerThread(client);
+        }
+        return true;
+    }
+
+    @Override
+    protected void disconnect(ServerThread client){
         super.disconnect(client);
         ServerPlayer sp = playersInRoom.remove(client.getClientId());
         LoggerUtil.INSTANCE.info("Players in room: " + playersInRoom.size());
@@ -131,10 +149,15 @@ public abstract class BaseGameRoom extends Room {
             resetReadyTimer();
         }
         if(readyTimer == null){
-            readyTimer = new TimedEvent(30, () -> {
-                // callback to trigger when ready expires
-                checkReadyStatus();
-            });
+            TimedEvent timer = new TimedEvent(30);
+            timer.setExpireCallback(() -> execute(() -> {
+                // callback to trigger when ready expires, ignored if the timer was reset meanwhile
+                // (session start/end sends several payloads, batch them per client)
+                if (readyTimer == timer) {
+                    batch(this::checkReadyStatus);
+                }
+            }));
+            readyTimer = timer;
             readyTimer.setTickCallback((time)->System.out.println("Ready Timer: " + time));
         }
     }
@@ -154,6 +177,7 @@ public abstract class BaseGameRoom extends Room {
 
     protected void resetReadyStatus() {
         playersInRoom.values().forEach(p -> p.setReady(false));
+        invalidateSnapshot();
         sendResetReadyTrigger();
     }
 
@@ -171,6 +195,27 @@ public abstract class BaseGameRoom extends Room {
 
     // send/sync data to ServerPlayer(s)
 
+    /**
+     * Encodes the payload once and sends the same bytes to every ServerPlayer in
+     * the room; players that fail to receive it are removed by a later task
+     * 
+     * @param payload
+     */
+    protected void broadcastToPlayers(Payload payload) {
+        long start = System.nanoTime();
+        Frame frame;
+        try {
+            frame = Frame.of(payload);
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe("Could not encode broadcast: " + payload, e);
+            return;
+        }
+        for (ServerPlayer spInRoom : playersInRoom.values()) {
+            spInRoom.sendFrame(frame);
+        }
+        BROADCAST_TIME.recordSince(start);
+    }
+
     /**
      * Syncs the current phase to a single client
      * @param sp
@@ -183,41 +228,33 @@ public abstract class BaseGameRoom extends Room {
      * Sends the current phase to all clients
      */
     protected void sendCurrentPhase(){
-        playersInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendCurrentPhase(currentPhase);
-            if (failedToSend) {
-                removedClient(spInRoom.getServerThread());
-            }
-            return failedToSend;
-        });
+        broadcastToPlayers(ServerThread.currentPhasePayload(currentPhase));
     }
 
     /**
      * A shorthand way of telling all clients to reset their local list's ready status
      */
     protected void sendResetReadyTrigger() {
-        playersInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendResetReady();
-            if (failedToSend) {
-                removedClient(spInRoom.getServerThread());
-            }
-            return failedToSend;
-        });
+        broadcastToPlayers(ServerThread.resetReadyPayload());
     }
 
     /**
-     * Sends the ready status of each ServerPlayer to one client
-     * 
-     * @param incomingSP
+     * Adds each member's ready and turn status and points to the snapshot sent
+     * to joiners (a joiner's own ServerPlayer doesn't exist yet, it starts out
+     * not ready with no points)
      */
-    protected void syncReadyStatus(ServerPlayer incomingSP) {
-        playersInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !incomingSP.sendReadyStatus(spInRoom.getClientId(), spInRoom.isReady(), true);
-            if (failedToSend) {
-                removedClient(spInRoom.getServerThread());
-            }
-            return failedToSend && spInRoom.getClientId() == incomingSP.getClientId();
-        });
+    @Override
+    protected RoomSnapshotPayload snapshotPayload() {
+        RoomSnapshotPayload rsp = super.snapshotPayload();
+        ArrayList<Integer> points = new ArrayList<Integer>(rsp.getClientIds().size());
+        for (int i = 0; i < rsp.getClientIds().size(); i++) {
+            ServerPlayer sp = playersInRoom.get(rsp.getClientIds().get(i));
+            rsp.getReady().set(i, sp != null && sp.isReady());
+            rsp.getTookTurn().set(i, sp != null && sp.didTakeTurn());
+            points.add(sp == null ? 0 : sp.getPoints());
+        }
+        rsp.setPoints(points);
+        return rsp;
     }
 
     /**
@@ -227,13 +264,7 @@ public abstract class BaseGameRoom extends Room {
      * @param isReady
      */
     protected void sendReadyStatus(ServerPlayer incomingSP, boolean isReady) {
-        playersInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendReadyStatus(incomingSP.getClientId(), incomingSP.isReady());
-            if (failedToSend) {
-                removedClient(spInRoom.getServerThread());
-            }
-            return failedToSend;
-        });
+        broadcastToPlayers(ServerThread.readyStatusPayload(incomingSP.getClientId(), incomingSP.isReady(), false));
     }
     // end send data to ServerPlayer(s)
 
@@ -255,6 +286,7 @@ public abstract class BaseGameRoom extends Room {
                 sp = playersInRoom.get(sender.getClientId());
                 sp.setReady(!sp.isReady());
             }
+            invalidateSnapshot();
             startReadyTimer(false); // <-- triggers the next step when it expires
 
             sendReadyStatus(sp, sp.isReady());
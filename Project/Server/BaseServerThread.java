@@ -1,20 +1,27 @@
 package Project.Server;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.Socket;
+import java.io.StreamCorruptedException;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
 
+import Project.Common.Frame;
+import Project.Common.LoggerUtil;
 import Project.Common.Payload;
 
 /**
- * Base class the handles the underlying connection between Client and Server-side
+ * Base class the handles the underlying connection between Client and Server-side.
+ * The blocking read loop (run()) is launched on a thread from a ThreadFactory so
+ * the Server can choose platform or virtual threads.
  */
-public abstract class BaseServerThread extends Thread {
+public abstract class BaseServerThread implements Runnable {
     
-    protected boolean isRunning = false; // control variable to stop this thread
-    protected ObjectOutputStream out; // exposed here for send()
-    protected Socket client; // communication directly to "my" client
+    protected volatile boolean isRunning = false; // control variable to stop this thread
+    private Thread thread; // thread running the blocking read loop (not used by NIO)
+    protected Connection connection; // communication directly to "my" client (see TransportMode)
+    private volatile long payloadsReceived = 0; // only the reader (thread or event loop) updates it
+    private volatile long lastReadNanos = System.nanoTime(); // when the client was last heard from
     
     /**
      * A wrapper method so we don't need to keep typing out the long/complex sysout
@@ -45,9 +52,29 @@ public abstract class BaseServerThread extends Thread {
         if(!isRunning){
             return true;
         }
+        Frame frame;
         try {
-            out.writeObject(payload);
-            out.flush();
+            frame = Frame.of(payload);
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe("Could not encode Payload: " + payload, e);
+            return true; // nothing wrong with the connection itself
+        }
+        return sendFrame(frame);
+    }
+
+    /**
+     * Sends an already encoded Payload over the socket.
+     * Used for broadcasts so the Payload is only encoded once for all recipients
+     * 
+     * @param frame
+     * @return true if no errors were encountered
+     */
+    protected boolean sendFrame(Frame frame) {
+        if(!isRunning){
+            return true;
+        }
+        try {
+            connection.write(frame);
             return true;
         } catch (IOException e) {
             info("Error sending message to client (most likely disconnected)");
@@ -58,47 +85,151 @@ public abstract class BaseServerThread extends Thread {
         }
     }
     
+    /**
+     * Holds outbound payloads until uncork() so a burst of sends (e.g. a round
+     * end) goes out in one flush
+     */
+    protected void cork() {
+        connection.cork();
+    }
+
+    /**
+     * Ends a cork() section
+     */
+    protected void uncork() {
+        connection.uncork();
+    }
+
+    /**
+     * Starts the blocking read loop (run()) on a new thread
+     * 
+     * @param threadFactory creates either a platform or a virtual thread
+     */
+    protected void start(ThreadFactory threadFactory) {
+        thread = threadFactory.newThread(this);
+        thread.start();
+    }
+
     /**
      * One of the two ways to get this to exit the listen loop
      */
     protected void disconnect() {
         info("Thread being disconnected by server");
         isRunning = false;
-        this.interrupt(); // breaks out of blocking read in the run() method
+        if (thread != null) {
+            thread.interrupt(); // breaks out of blocking read in the run() method
+        }
         cleanup(); // good practice to ensure data is written out immediately
     }
 
+    /**
+     * Used by the NIO transport: the connection is live once its event loop
+     * registers it, no reader thread is involved
+     */
+    protected void onAttached() {
+        isRunning = true;
+        info("Attached to event loop");
+    }
+
+    /**
+     * Handles a fully decoded Payload (called by run() or by an NIO event loop)
+     * 
+     * @param payload
+     */
+    protected void onPayloadReceived(Payload payload) {
+        payloadsReceived++;
+        lastReadNanos = System.nanoTime();
+        if (LoggerUtil.INSTANCE.isLoggable(Level.INFO)) { // don't build the line per payload if INFO is off
+            info("Received from my client: " + payload);
+        }
+        processPayload(payload);
+    }
+
+    /**
+     * Triggered when the client side closed or the socket failed
+     */
+    protected void onConnectionLost() {
+        isRunning = false;
+        info("My Client disconnected");
+        cleanup();
+    }
+
+    /**
+     * @return payloads received from the client so far
+     */
+    public long getPayloadsReceived() {
+        return payloadsReceived;
+    }
+
+    /**
+     * @return System.nanoTime() of the last Payload received (or of creation)
+     */
+    public long getLastReadNanos() {
+        return lastReadNanos;
+    }
+
+    /**
+     * Counts as hearing from the client (e.g. after reading was paused on
+     * purpose, so the quiet time isn't held against it)
+     */
+    protected void markActive() {
+        lastReadNanos = System.nanoTime();
+    }
+
+    /**
+     * @return payloads written to the client so far
+     */
+    public long getPayloadsSent() {
+        return connection.getFramesWritten();
+    }
+
+    /**
+     * @return bytes received from the client so far
+     */
+    public long getBytesReceived() {
+        return connection.getBytesRead();
+    }
+
+    /**
+     * @return bytes written to the client so far
+     */
+    public long getBytesSent() {
+        return connection.getBytesWritten();
+    }
+
     @Override
     public void run() {
         info("Thread starting");
-        try (ObjectOutputStream out = new ObjectOutputStream(client.getOutputStream());
-                ObjectInputStream in = new ObjectInputStream(client.getInputStream());) {
-            this.out = out;
+        if (!(connection instanceof BlockingConnection blocking)) {
+            // NIO connections are driven by their event loop instead
+            info("run() requires a BlockingConnection");
+            return;
+        }
+        try {
             isRunning = true;
             //onInitialized();
             Payload fromClient;
             /**
              * isRunning is a flag to let us manage the loop exit condition
-             * fromClient (in.readObject()) is a blocking method that waits until data is received
-             *  - null would likely mean a disconnect so we use a "set and check" logic to alternatively exit the loop
+             * fromClient (blocking.read()) is a blocking method that waits until a full frame is received
+             *  - EOFException means the client closed the socket so we exit the loop
              */
             while (isRunning) {
                 try{
-                    fromClient = (Payload) in.readObject(); // blocking method
-                    if (fromClient != null) {
-                        info("Received from my client: " + fromClient);
-                        processPayload(fromClient);
-                    }
-                    else{
-                        throw new IOException("Connection interrupted"); // Specific exception for a clean break
-                    }
+                    fromClient = blocking.read(); // blocking method
+                    onPayloadReceived(fromClient);
                 }
-                catch (ClassCastException | ClassNotFoundException cce) {
-                    System.err.println("Error reading object as specified type: " + cce.getMessage());
-                    cce.printStackTrace();
+                catch (StreamCorruptedException sce) {
+                    System.err.println("Error reading frame as a Payload: " + sce.getMessage());
+                    sce.printStackTrace();
+                    break; // framing is lost, can't recover the stream
+                }
+                catch (EOFException eof) {
+                    info("My Client disconnected");
+                    break;
                 }
                 catch (IOException e) {
-                    if (Thread.currentThread().isInterrupted()) {
+                    if (Thread.currentThread().isInterrupted() || !isRunning) {
                         info("Thread interrupted during read (likely from the disconnect() method)");
                         break;
                     }
@@ -121,12 +252,8 @@ public abstract class BaseServerThread extends Thread {
 
     protected void cleanup() {
         info("ServerThread cleanup() start");
-        try {
-            client.close();
-        } catch (IOException e) {
-            info("Client already closed");
-        }
-        
+        connection.close();
+
         info("ServerThread cleanup() end");
     }
 }
\ No newline at end of file
@@ -0,0 +1,231 @@
+package Project.Server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import Project.Common.Frame;
+import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+import Project.Common.PayloadCodec;
+
+/**
+ * Classic java.io Socket connection, read by the owning ServerThread's run()
+ * loop. Writes go through a bounded OutboundQueue drained by a dedicated
+ * (virtual) writer thread so senders never block on the socket.
+ */
+public class BlockingConnection implements Connection {
+    private static final long CLOSE_GRACE_MILLIS = 2000; // time the writer gets to flush on close()
+
+    private final Socket client;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final OutboundQueue outbound;
+    private final Thread writer;
+    // setReadPaused(true) parks the reader at its next read() until resumed or closed
+    private final ReentrantLock readGate = new ReentrantLock();
+    private final Condition readResumed = readGate.newCondition();
+    private volatile boolean readPaused = false;
+    // single writer each (reader thread / writer thread), volatile so metrics can read them anywhere
+    private volatile long bytesRead = 0;
+    private volatile long bytesWritten = 0;
+    private volatile long framesWritten = 0;
+
+    public BlockingConnection(Socket client, OutboundQueue outbound) throws IOException {
+        this.client = client;
+        this.out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+        this.in = new DataInputStream(new BufferedInputStream(new CountingInputStream(client.getInputStream())));
+        this.outbound = outbound;
+        // a virtual thread regardless of TransportMode, it spends its life parked on the queue
+        this.writer = Thread.ofVirtual().name("ConnectionWriter").start(this::writeLoop);
+    }
+
+    /**
+     * Blocking read of the next Payload from the client
+     *
+     * @return the decoded Payload
+     * @throws IOException EOFException when the client closed the socket
+     */
+    public Payload read() throws IOException {
+        if (readPaused) {
+            awaitResume();
+        }
+        return PayloadCodec.readFrame(in);
+    }
+
+    /**
+     * Parks the reader until reading is resumed or the socket closes (then the
+     * read itself fails and the ServerThread cleans up)
+     */
+    private void awaitResume() throws IOException {
+        readGate.lock();
+        try {
+            while (readPaused && !client.isClosed()) {
+                readResumed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading was paused");
+        } finally {
+            readGate.unlock();
+        }
+    }
+
+    @Override
+    public void setReadPaused(boolean paused) {
+        readGate.lock();
+        try {
+            readPaused = paused;
+            if (!paused) {
+                readResumed.signalAll();
+            }
+        } finally {
+            readGate.unlock();
+        }
+    }
+
+    @Override
+    public void write(Frame frame) throws IOException {
+        if (!outbound.offer(frame)) {
+            close();
+            throw new IOException("Outbound queue overflow or connection closed");
+        }
+    }
+
+    @Override
+    public void cork() {
+        outbound.cork();
+    }
+
+    @Override
+    public void uncork() {
+        outbound.uncork();
+    }
+
+    /**
+     * Drains the outbound queue to the socket until the connection closes.
+     * Everything already queued is written before a single flush, so a burst of
+     * small payloads costs one write syscall instead of one each.
+     */
+    private void writeLoop() {
+        try {
+            Frame frame;
+            while ((frame = outbound.take()) != null) {
+                int batched = 0;
+                long bytes = 0;
+                do {
+                    frame.writeTo(out);
+                    batched++;
+                    bytes += frame.size();
+                } while ((frame = outbound.poll()) != null);
+                out.flush();
+                bytesWritten += bytes;
+                framesWritten += batched;
+                FlushMetrics.INSTANCE.record(batched);
+            }
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.fine("Write failed, closing connection");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            outbound.close();
+            outbound.clear();
+            closeSocket(); // also unblocks the reader so the ServerThread cleans up
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !client.isClosed();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    @Override
+    public long getFramesDiscarded() {
+        return outbound.getDropped() + outbound.getCoalesced();
+    }
+
+    /**
+     * Stops accepting Frames and closes the socket once the writer has flushed
+     * what's already queued (e.g. a final DISCONNECT notice)
+     */
+    @Override
+    public void close() {
+        if (!outbound.close() || Thread.currentThread() == writer) {
+            return;
+        }
+        // don't let a stalled client hold the socket open forever
+        Thread.ofVirtual().name("ConnectionCloser").start(() -> {
+            try {
+                writer.join(CLOSE_GRACE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closeSocket();
+        });
+    }
+
+    private void closeSocket() {
+        try {
+            client.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        readGate.lock();
+        try {
+            readResumed.signalAll(); // a paused reader has to notice the close
+        } finally {
+            readGate.unlock();
+        }
+    }
+
+    /**
+     * Counts what the reader pulls off the socket (under the buffering, so it's
+     * the real bytes received)
+     */
+    private class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytesRead++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                bytesRead += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+
+import Project.Common.LoggerUtil;
+
+/**
+ * Benchmark of Room message fan-out against room size.
+ * Compares encoding the message once per recipient (the previous behavior) with
+ * Room.sendMessage's encode-once broadcast, over real loopback sockets.
+ * Sends are asynchronous, so each measurement lasts until every recipient's
+ * outbound queue has drained.
+ * <p>
+ * Usage: java Project.Server.BroadcastBenchmark [roomSize...]
+ * </p>
+ */
+public class BroadcastBenchmark {
+    private static final int DELIVERIES_PER_RUN = 400_000; // messages * recipients per measurement
+
+    public static void main(String[] args) throws Exception {
+        int[] roomSizes = { 2, 10, 100, 1000 };
+        if (args.length > 0) {
+            roomSizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                roomSizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("benchmark.log");
+        config.setFileLogLevel(Level.WARNING);
+        config.setConsoleLogLevel(Level.WARNING);
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        System.out.println(String.format("%9s %9s %16s %16s %8s %16s", "roomSize", "messages", "perRecipient/s",
+                "broadcast/s", "speedup", "payloads/flush"));
+        for (int roomSize : roomSizes) {
+            run(roomSize);
+        }
+    }
+
+    private static void run(int roomSize) throws Exception {
+        ThreadFactory threadFactory = Server.readerThreadFactory(TransportMode.VIRTUAL);
+        List<Socket> clientSockets = new ArrayList<>();
+        Room room = new Room("benchmark-" + roomSize);
+        List<ServerThread> members = new ArrayList<>();
+        List<OutboundQueue> queues = new ArrayList<>();
+        int messages = Math.max(100, DELIVERIES_PER_RUN / roomSize);
+        try (ServerSocket serverSocket = new ServerSocket(0, roomSize, InetAddress.getLoopbackAddress())) {
+            for (int i = 0; i < roomSize; i++) {
+                Socket clientSocket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+                clientSockets.add(clientSocket);
+                threadFactory.newThread(() -> drain(clientSocket)).start();
+                // room for a whole run so the measurement never hits the overflow policy
+                OutboundQueue queue = new OutboundQueue(messages + 16, OutboundQueue.OverflowPolicy.DISCONNECT);
+                queues.add(queue);
+                ServerThread st = new ServerThread(new BlockingConnection(serverSocket.accept(), queue), (s) -> {
+                });
+                st.start(threadFactory);
+                members.add(st);
+            }
+        }
+        for (ServerThread st : members) {
+            while (!st.isRunning) {
+                Thread.sleep(1);
+            }
+        }
+        for (int i = 0; i < members.size(); i++) {
+            members.get(i).sendClientId(i + 1);
+            room.addClient(members.get(i));
+        }
+        String message = "benchmark message with a typical chat length";
+
+        // warm up both paths, then measure
+        perRecipient(room, members, queues, messages / 10, message);
+        broadcast(room, queues, messages / 10, message);
+        FlushMetrics.INSTANCE.reset();
+        double perRecipientRate = perRecipient(room, members, queues, messages, message);
+        double broadcastRate = broadcast(room, queues, messages, message);
+        System.out.println(String.format("%9s %9s %16.0f %16.0f %7.1fx %16.1f", roomSize, messages, perRecipientRate,
+                broadcastRate, broadcastRate / perRecipientRate, FlushMetrics.INSTANCE.getPayloadsPerFlush()));
+
+        members.forEach(ServerThread::disconnect);
+        for (Socket socket : clientSockets) {
+            socket.close();
+        }
+    }
+
+    /**
+     * The pre-broadcast Room.sendMessage body (log line included): every
+     * recipient builds and encodes its own copy
+     *
+     * @return messages per second
+     */
+    private static double perRecipient(Room room, List<ServerThread> members, List<OutboundQueue> queues,
+            int messages, String message) throws InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            synchronized (room) {
+                LoggerUtil.INSTANCE.info(String.format("Room[%s]: %s", room.getName(),
+                        String.format("sending message to %s recipients: %s", members.size(), message)));
+                for (ServerThread st : members) {
+                    st.sendMessage(ServerThread.DEFAULT_CLIENT_ID, message);
+                }
+            }
+        }
+        awaitDrained(queues);
+        return messages / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    /**
+     * Room.sendMessage, encodes once and writes the same Frame to every recipient
+     *
+     * @return messages per second
+     */
+    private static double broadcast(Room room, List<OutboundQueue> queues, int messages, String message)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            room.sendMessage(null, message);
+        }
+        awaitDrained(queues);
+        return messages / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    private static void awaitDrained(List<OutboundQueue> queues) throws InterruptedException {
+        for (OutboundQueue queue : queues) {
+            while (!queue.isEmpty()) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    /**
+     * Simulated client that reads and discards everything
+     */
+    private static void drain(Socket socket) {
+        byte[] sink = new byte[16 * 1024];
+        try (InputStream in = socket.getInputStream()) {
+            while (in.read(sink) >= 0) {
+                // discard
+            }
+        } catch (IOException e) {
+            // closed at the end of the run
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package Project.Server;
+
+import java.io.IOException;
+
+import Project.Common.Frame;
+
+/**
+ * The socket I/O behind a BaseServerThread.
+ * Implementations decide how frames are written and when they're read so the
+ * Room/ServerThread logic doesn't depend on the TransportMode in use.
+ */
+public interface Connection {
+    /**
+     * Writes an encoded Payload to the client.
+     * The same Frame may be written to many connections (broadcasts)
+     * 
+     * @param frame
+     * @throws IOException if the connection is no longer usable
+     */
+    void write(Frame frame) throws IOException;
+
+    /**
+     * Holds back written Frames so everything written until the matching
+     * uncork() reaches the socket in as few flushes as possible. Calls nest.
+     */
+    void cork();
+
+    /**
+     * Ends a cork() section and lets the held Frames go out
+     */
+    void uncork();
+
+    /**
+     * Stops (or resumes) reading from the client's socket; safe from any
+     * thread. While paused the client's unread bytes back up in the socket
+     * buffers until the client itself can't send any more. A frame already
+     * being handed to the ServerThread still finishes.
+     *
+     * @param paused true to stop reading, false to resume
+     */
+    void setReadPaused(boolean paused);
+
+    /**
+     * @return true until the connection is closed by either side
+     */
+    boolean isOpen();
+
+    /**
+     * Closes the underlying socket; safe to call more than once
+     */
+    void close();
+
+    /**
+     * @return bytes received from the client so far
+     */
+    long getBytesRead();
+
+    /**
+     * @return bytes written to the client's socket so far
+     */
+    long getBytesWritten();
+
+    /**
+     * @return Frames written to the client's socket so far
+     */
+    long getFramesWritten();
+
+    /**
+     * @return Frames the overflow policy dropped or replaced, the client never
+     *         gets those
+     */
+    long getFramesDiscarded();
+}
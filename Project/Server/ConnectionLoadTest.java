@@ -0,0 +1,122 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+
+import Project.Common.LoggerUtil;
+
+/**
+ * Load test comparing the memory cost of idle connections for the BLOCKING
+ * (platform thread) and VIRTUAL (virtual thread) transport modes.
+ * <p>
+ * Opens N loopback connections, starts a ServerThread read loop for each one
+ * and reports the heap and resident memory added by the read loops, expressed
+ * as connections per GB.
+ * </p>
+ * Usage: java Project.Server.ConnectionLoadTest [connections]
+ */
+public class ConnectionLoadTest {
+    private static final long GB = 1024L * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int connections = 2000;
+        try {
+            connections = Integer.parseInt(args[0]);
+        } catch (Exception e) {
+            // defaults to the value above
+        }
+        // keep per-connection INFO logging from dominating the run
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("loadtest.log");
+        config.setFileLogLevel(Level.WARNING);
+        config.setConsoleLogLevel(Level.WARNING);
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        System.out.println(String.format("%-10s %12s %14s %14s %16s %16s", "mode", "connections",
+                "heap/conn", "rss/conn", "conns/GB heap", "conns/GB rss"));
+        for (TransportMode mode : new TransportMode[] { TransportMode.BLOCKING, TransportMode.VIRTUAL }) {
+            run(mode, connections);
+        }
+    }
+
+    private static void run(TransportMode mode, int connections) throws Exception {
+        ThreadFactory threadFactory = Server.readerThreadFactory(mode);
+        List<Socket> clientSockets = new ArrayList<>(connections);
+        List<ServerThread> serverThreads = new ArrayList<>(connections);
+        try (ServerSocket serverSocket = new ServerSocket(0, connections, InetAddress.getLoopbackAddress())) {
+            // open every socket first so only the read loops are measured
+            List<Socket> accepted = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                clientSockets.add(new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort()));
+                accepted.add(serverSocket.accept());
+            }
+            long heapBefore = usedHeap();
+            long rssBefore = residentMemory();
+            for (Socket socket : accepted) {
+                ServerThread st = new ServerThread(new BlockingConnection(socket, new ServerConfig().newOutboundQueue()), (s) -> {
+                });
+                st.start(threadFactory);
+                serverThreads.add(st);
+            }
+            // wait for every read loop to be parked in its blocking read
+            while (serverThreads.stream().anyMatch(st -> !st.isRunning)) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(500);
+            long heapDelta = Math.max(1, usedHeap() - heapBefore);
+            long rssDelta = Math.max(1, residentMemory() - rssBefore);
+            System.out.println(String.format("%-10s %12s %14s %14s %16s %16s", mode, connections,
+                    bytes(heapDelta / connections), rssBefore < 0 ? "n/a" : bytes(rssDelta / connections),
+                    GB * connections / heapDelta, rssBefore < 0 ? "n/a" : GB * connections / rssDelta));
+        } finally {
+            serverThreads.forEach(ServerThread::disconnect);
+            for (Socket socket : clientSockets) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // ignore, test is ending
+                }
+            }
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Resident set size from /proc (Linux only); includes platform thread stacks
+     * which never show up in the heap numbers
+     *
+     * @return bytes or -1 if unavailable
+     */
+    private static long residentMemory() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not on Linux
+        }
+        return -1;
+    }
+
+    private static String bytes(long bytes) {
+        return bytes >= 1024 ? String.format("%.1fKB", bytes / 1024.0) : bytes + "B";
+    }
+}
@@ -0,0 +1,115 @@
+package Project.Server;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+
+/**
+ * Finds connections whose client went quiet, including half-open TCP sessions
+ * where the other side vanished without closing: writes to those can succeed
+ * for a long time, so waiting for a failed send isn't enough.
+ * Once a second it checks every connection:
+ * - quiet for pingInterval: send a PING, a live client answers with PONG
+ * - quiet for readIdleTimeout: close it, which frees its reader thread and
+ * buffers and queues its removal from its Room (see Room.removeDeadClient())
+ * Connections the Server stopped reading on purpose (see InboundLimiter)
+ * aren't held to this. Intervals come from ServerConfig.
+ */
+public class ConnectionReaper {
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+    private static final LongAdder PINGS = Metrics.INSTANCE.counter("server_heartbeat_pings_total", "",
+            "PINGs sent to quiet clients");
+    private static final LongAdder REAPED = Metrics.INSTANCE.counter("server_reaped_connections_total", "",
+            "Connections closed for being quiet past the read idle timeout");
+
+    private final Set<ServerThread> clients = ConcurrentHashMap.newKeySet();
+    private final long pingIntervalNanos;
+    private final long readIdleTimeoutNanos;
+    private ScheduledThreadPoolExecutor timer;
+
+    /**
+     * @param config ping interval and read idle timeout
+     */
+    public ConnectionReaper(ServerConfig config) {
+        this.pingIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getPingIntervalMillis()));
+        this.readIdleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getReadIdleTimeoutMillis()));
+    }
+
+    /**
+     * Starts the once a second check, unless both pings and the timeout are off
+     */
+    public void start() {
+        if (pingIntervalNanos == 0 && readIdleTimeoutNanos == 0) {
+            return;
+        }
+        timer = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform().name("ConnectionReaper").daemon(true).factory());
+        timer.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * @param client a connection to watch from now on
+     */
+    public void add(ServerThread client) {
+        clients.add(client);
+    }
+
+    /**
+     * @param client a connection that ended
+     */
+    public void remove(ServerThread client) {
+        clients.remove(client);
+    }
+
+    /**
+     * @return connections being watched
+     */
+    public int size() {
+        return clients.size();
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        for (ServerThread client : clients) {
+            try {
+                check(client, now);
+            } catch (Exception e) {
+                LoggerUtil.INSTANCE.severe("ConnectionReaper failed checking a client", e);
+            }
+        }
+    }
+
+    private void check(ServerThread client, long now) {
+        if (!client.isRunning || client.isReadPaused()) {
+            return;
+        }
+        long lastRead = client.getLastReadNanos();
+        long quiet = now - lastRead;
+        if (readIdleTimeoutNanos > 0 && quiet >= readIdleTimeoutNanos) {
+            REAPED.increment();
+            LoggerUtil.INSTANCE.info(String.format("Closing connection of %s[%s], quiet for %ss",
+                    client.getClientName(), client.getClientId(), TimeUnit.NANOSECONDS.toSeconds(quiet)));
+            client.disconnect();
+            remove(client);
+            return;
+        }
+        // one PING per quiet period; the PONG (or anything else) starts a new one. Not before
+        // CLIENT_ID, so a PING can't slip in ahead of the session's ReplayLog
+        if (pingIntervalNanos > 0 && quiet >= pingIntervalNanos && client.isSessionStarted()
+                && client.getLastPingNanos() - lastRead <= 0) {
+            PINGS.increment();
+            client.sendPing(now);
+        }
+    }
+}
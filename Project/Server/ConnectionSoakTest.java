@@ -0,0 +1,145 @@
+package Project.Server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+import Project.Common.PayloadCodec;
+import Project.Common.PayloadType;
+
+/**
+ * Soak test for long-lived connections: a single client sends MESSAGE payloads
+ * that its Room echoes back, and the heap (after GC) is sampled along the way.
+ * Fails (exit code 1) if the heap keeps growing with the number of payloads,
+ * which is what a never-reset serialization handle table used to cause.
+ * <p>
+ * Usage: java Project.Server.ConnectionSoakTest [messages] [blocking|nio]
+ * </p>
+ */
+public class ConnectionSoakTest {
+    private static final int SAMPLES = 10;
+    private static final long MAX_GROWTH = 8L * 1024 * 1024; // allowed noise between first and last sample
+
+    public static void main(String[] args) throws Exception {
+        int messages = 1_000_000;
+        TransportMode mode = TransportMode.BLOCKING;
+        try {
+            messages = Integer.parseInt(args[0]);
+            mode = TransportMode.valueOf(args[1].toUpperCase());
+        } catch (Exception e) {
+            // defaults to the values above
+        }
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("soaktest.log");
+        config.setFileLogLevel(Level.WARNING);
+        config.setConsoleLogLevel(Level.WARNING);
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        boolean passed = run(mode, messages);
+        System.out.println(passed ? "PASSED: heap stayed flat" : "FAILED: heap grew with message count");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean run(TransportMode mode, int messages) throws Exception {
+        NioEventLoop loop = null;
+        ServerThread serverThread;
+        Socket clientSocket;
+        // the client pipelines faster than one connection drains, so chat can overflow
+        // the bounded queue; dropped messages count as handled
+        OutboundQueue outbound = new ServerConfig().newOutboundQueue();
+        if (mode == TransportMode.NIO) {
+            loop = new NioEventLoop("SoakEventLoop");
+            loop.start();
+            try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+                serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                clientSocket = new Socket(InetAddress.getLoopbackAddress(), serverChannel.socket().getLocalPort());
+                SocketChannel accepted = serverChannel.accept();
+                NioConnection connection = new NioConnection(accepted, loop, outbound);
+                serverThread = new ServerThread(connection, (s) -> {
+                });
+                connection.bind(serverThread);
+            }
+        } else {
+            try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+                clientSocket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+                serverThread = new ServerThread(new BlockingConnection(serverSocket.accept(), outbound), (s) -> {
+                });
+                serverThread.start(Server.readerThreadFactory(mode));
+            }
+        }
+        while (!serverThread.isRunning) {
+            Thread.sleep(10);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(clientSocket.getInputStream()));
+        serverThread.sendClientId(1);
+        Room room = new Room("soak");
+        room.addClient(serverThread);
+
+        // echoes arrive on their own thread so the socket never backs up
+        AtomicLong echoed = new AtomicLong();
+        Thread reader = Thread.ofPlatform().name("SoakReader").start(() -> {
+            try {
+                while (true) {
+                    if (PayloadCodec.readFrame(in).getPayloadType() == PayloadType.MESSAGE) {
+                        echoed.incrementAndGet();
+                    }
+                }
+            } catch (IOException e) {
+                // socket closed at the end of the test
+            }
+        });
+
+        long[] heap = new long[SAMPLES];
+        int perSample = messages / SAMPLES;
+        long start = System.nanoTime();
+        System.out.println(String.format("%s transport, %s messages", mode, messages));
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            for (int i = 0; i < perSample; i++) {
+                Payload p = new Payload();
+                p.setPayloadType(PayloadType.MESSAGE);
+                p.setMessage("soak message " + i);
+                PayloadCodec.writeFrame(out, p);
+            }
+            long target = (long) perSample * (sample + 1);
+            while (echoed.get() + outbound.getDropped() < target) {
+                Thread.sleep(1);
+            }
+            heap[sample] = usedHeap();
+            System.out.println(String.format("%10s handled, %10s dropped, heap %6.1fMB", target,
+                    outbound.getDropped(), heap[sample] / 1024.0 / 1024.0));
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.println(String.format("%.0f round trips/s", messages / seconds));
+
+        clientSocket.close();
+        serverThread.disconnect();
+        reader.join();
+        if (loop != null) {
+            loop.shutdown();
+        }
+        // compare against the first sample so startup/JIT allocations are excluded
+        return heap[SAMPLES - 1] - heap[0] < MAX_GROWTH;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 2; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,61 @@
+package Project.Server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide counters for outbound write batching.
+ * A flush is one write to the socket (BlockingConnection's flush() or one
+ * NioConnection gathering write); every payload beyond the first in a flush is
+ * a syscall that per-payload flushing would have made.
+ */
+public enum FlushMetrics {
+    INSTANCE;
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder payloads = new LongAdder();
+
+    /**
+     * Records one flush to a socket
+     *
+     * @param payloadCount payloads written by it (0 when finishing a partial
+     *                     write)
+     */
+    public void record(int payloadCount) {
+        flushes.increment();
+        payloads.add(payloadCount);
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    public long getPayloads() {
+        return payloads.sum();
+    }
+
+    /**
+     * @return average payloads written per flush
+     */
+    public double getPayloadsPerFlush() {
+        long flushCount = getFlushes();
+        return flushCount == 0 ? 0 : (double) getPayloads() / flushCount;
+    }
+
+    /**
+     * @return flushes avoided compared to flushing after every payload
+     */
+    public long getSyscallsSaved() {
+        return Math.max(0, getPayloads() - getFlushes());
+    }
+
+    public void reset() {
+        flushes.reset();
+        payloads.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("flushes=%s payloads=%s payloadsPerFlush=%.2f syscallsSaved=%s", getFlushes(),
+                getPayloads(), getPayloadsPerFlush(), getSyscallsSaved());
+    }
+}
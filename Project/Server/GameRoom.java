@@ -1,9 +1,13 @@
 package Project.Server;
-import java.util.List;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import Project.Common.Grid;
 import Project.Common.LoggerUtil;
+import Project.Common.Payload;
 import Project.Common.Phase;
 import Project.Common.Player;
 import Project.Common.TimedEvent;
@@ -18,6 +22,12 @@ public class GameRoom extends BaseGameRoom {
 
     private Grid grid = null;
 
+    // every this many rounds the scoreboard is sent in full instead of just the changes
+    private static final int SCOREBOARD_SNAPSHOT_ROUNDS = 10;
+    // players whose points changed since the last scoreboard sync
+    private final Set<ServerPlayer> pointsChanged = new LinkedHashSet<>();
+    private int roundsSinceSnapshot = 0;
+
     public GameRoom(String name) {
         super(name);
     }
@@ -25,9 +35,8 @@ public class GameRoom extends BaseGameRoom {
     /** {@inheritDoc} */
     @Override
     protected void onClientAdded(ServerPlayer sp) {
-        // sync GameRoom state to new client
+        // sync GameRoom state to new client (ready, turns and points came with the room snapshot)
         syncCurrentPhase(sp);
-        syncReadyStatus(sp);
         if (currentPhase != Phase.READY) {
             syncGridDimensions(sp);
         }
@@ -39,6 +48,7 @@ public class GameRoom extends BaseGameRoom {
         // added after Summer 2024 Demo
         // Stops the timers so room can clean up
         LoggerUtil.INSTANCE.info("Player Removed, remaining: " + playersInRoom.size());
+        pointsChanged.remove(sp);
         if(playersInRoom.isEmpty()){
             resetReadyTimer();
             resetTurnTimer();
@@ -49,7 +59,14 @@ public class GameRoom extends BaseGameRoom {
 
     // timer handlers
     private void startRoundTimer() {
-        roundTimer = new TimedEvent(30, () -> onRoundEnd());
+        TimedEvent timer = new TimedEvent(30);
+        // expiry is handed to the room's mailbox; ignore it if the round already moved on
+        timer.setExpireCallback(() -> execute(() -> {
+            if (roundTimer == timer) {
+                batch(this::onRoundEnd);
+            }
+        }));
+        roundTimer = timer;
         roundTimer.setTickCallback((time) -> System.out.println("Round Time: " + time));
     }
 
@@ -61,7 +78,13 @@ public class GameRoom extends BaseGameRoom {
     }
 
     private void startTurnTimer(){
-        turnTimer = new TimedEvent(30, ()-> onTurnEnd());
+        TimedEvent timer = new TimedEvent(30);
+        timer.setExpireCallback(() -> execute(() -> {
+            if (turnTimer == timer) {
+                onTurnEnd();
+            }
+        }));
+        turnTimer = timer;
         turnTimer.setTickCallback((time)->System.out.println("Turn Time: " + time));
     }
 
@@ -79,6 +102,11 @@ public class GameRoom extends BaseGameRoom {
     @Override
     protected void onSessionStart() {
         LoggerUtil.INSTANCE.info("onSessionStart() start");
+        // everyone starts the session back in the game
+        playersInRoom.values().forEach(sp -> {
+            sp.setEliminated(false);
+            sp.setPick(null);
+        });
         changePhase(Phase.IN_PROGRESS);
         grid = new Grid(1, 3);
         sendGridDimensions();
@@ -134,66 +162,51 @@ public class GameRoom extends BaseGameRoom {
     @Override
     protected void onSessionEnd() {
         LoggerUtil.INSTANCE.info("onSessionEnd() start");
-        this.grid.reset();
         resetRoundTimer(); // just in case it's still active if we forgot to end it sooner
-        sendGridDimensions();
+        if (this.grid != null) { // null if no session ran yet (e.g. the last player left during READY)
+            this.grid.reset();
+            sendGridDimensions();
+        }
         sendResetTurnStatus();
         resetReadyStatus();
         changePhase(Phase.READY);
         LoggerUtil.INSTANCE.info("onSessionEnd() end");
-        if (this.grid == null) {
-            System.err.println("Error: Grid is null in onSessionEnd.");
-            return; // Avoid further processing
-        }
-        this.grid.reset();
-
-        if (this.grid == null) {
-            System.err.println("Error: Grid is not initialized.");
-            return; // Exit the method gracefully
-        }
-        this.grid.reset();
     }
     // end lifecycle methods
 
     // misc logic
+    /**
+     * Resolves the round once every player still in the game (ready and not
+     * eliminated) has picked, then ends the session or starts the next round
+     */
     private void checkIfAllTookTurns() {
-        long ready = playersInRoom.values().stream().filter(p -> p.isReady()).count();
-        long tookTurn = playersInRoom.values().stream().filter(p -> p.isReady() && p.didTakeTurn()).count();
-        if (ready == tookTurn) {
-            // example of some end session condition 2
-            /*if (grid.areAllCellsOccupied()) {
-                sendMessage(null, "Congrats, you filled the grid");
-               onSessionEnd();
-            }*/ 
-                sendResetTurnStatus();
-                sendMessage(null, "Move again");
-                //playerPicks.clear();
-                processBattles();
-
-            int activePlayers = (int) playersInRoom.values().stream().filter(player -> !player.isEliminated()).count();
-            if(activePlayers == 1){
-                playersInRoom.values().stream()
-                .filter(player -> !player.isEliminated())
-                .findFirst()
-                .ifPresent(winner -> sendMessage(null, "Player " + winner.getClientId() + " wins the game!"));
-                onSessionEnd();
-            }
-            else if(activePlayers == 0){
-                sendMessage(null,"tie");
-                onSessionEnd();
-            }
-            else{
-                sendMessage(null, "next round starting");
-                //playerPicks.clear();
-                onRoundStart();
-            }
-
-            if (ready == tookTurn) {
-                sendResetTurnStatus();
-                onRoundStart(); // Or trigger logic to evaluate results
-                sendMessage(null, "All players have made their picks. Starting next round.");
+        long active = 0;
+        long picked = 0;
+        for (ServerPlayer sp : playersInRoom.values()) {
+            if (sp.isReady() && !sp.isEliminated()) {
+                active++;
+                // MOVE marks the turn, the PICK that follows it carries the choice
+                if (sp.didTakeTurn() && sp.getPick() != null) {
+                    picked++;
+                }
             }
         }
+        if (active == 0 || picked < active) {
+            return;
+        }
+        RoundResult result = processBattles();
+        sendResetTurnStatus(); // after the results, clients take it as the start of the next round
+        long remaining = active - result.getEliminated().size();
+        if (remaining <= 1) {
+            playersInRoom.values().stream()
+                    .filter(sp -> sp.isReady() && !sp.isEliminated())
+                    .findFirst()
+                    .ifPresent(winner -> sendMessage(null, "Player " + winner.getClientId() + " wins the game!"));
+            onSessionEnd();
+        } else {
+            sendMessage(null, "next round starting");
+            onRoundStart();
+        }
     }
     // end misc logic
 
@@ -208,23 +221,34 @@ public class GameRoom extends BaseGameRoom {
      * @param y
      */
     private void sendMove(ServerPlayer sp, int x, int y) { 
-        playersInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendMove(sp.getClientId(), x, y);
-            if (failedToSend) {
-                removedClient(spInRoom.getServerThread());
-            }
-            return failedToSend;
-        });
+        broadcastToPlayers(ServerThread.movePayload(sp.getClientId(), x, y));
+    }
+
+    /**
+     * Sends the points of the players that changed since the last call to all
+     * Players, or everyone's points every SCOREBOARD_SNAPSHOT_ROUNDS calls
+     */
+    private void sendScoreboard() {
+        boolean snapshot = ++roundsSinceSnapshot >= SCOREBOARD_SNAPSHOT_ROUNDS;
+        if (snapshot) {
+            roundsSinceSnapshot = 0;
+            broadcastToPlayers(ServerThread.scoreboardPayload(scoreboard(playersInRoom.values()), true));
+        } else if (!pointsChanged.isEmpty()) {
+            broadcastToPlayers(ServerThread.scoreboardPayload(scoreboard(pointsChanged), false));
+        }
+        pointsChanged.clear();
+    }
+
+    private static LinkedHashMap<Long, Integer> scoreboard(Collection<ServerPlayer> players) {
+        LinkedHashMap<Long, Integer> points = new LinkedHashMap<>(players.size() * 2);
+        for (ServerPlayer sp : players) {
+            points.put(sp.getClientId(), sp.getPoints());
+        }
+        return points;
     }
 
     private void sendPick(ServerPlayer sp, String pick){
-        playersInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendPick(sp.getClientId(), pick);
-            if (failedToSend) {
-                removedClient(spInRoom.getServerThread());
-            }
-            return failedToSend;
-        });
+        broadcastToPlayers(ServerThread.pickPayload(sp.getClientId(), pick));
     }
 
     /**
@@ -232,16 +256,11 @@ public class GameRoom extends BaseGameRoom {
      * status
      */
     private void sendResetTurnStatus() {
-        playersInRoom.values().removeIf(spInRoom -> {
-            spInRoom.setTakeTurn(false); // reset server data
-            // using DEFAULT_CLIENT_ID as a trigger, prevents needing a nested loop to
-            // update the status of each player to each player
-            boolean failedToSend = !spInRoom.sendTurnStatus(Player.DEFAULT_CLIENT_ID, false);
-            if (failedToSend) {
-                removedClient(spInRoom.getServerThread());
-            }
-            return failedToSend;
-        });
+        playersInRoom.values().forEach(spInRoom -> spInRoom.setTakeTurn(false)); // reset server data
+        invalidateSnapshot();
+        // using DEFAULT_CLIENT_ID as a trigger, prevents needing a nested loop to
+        // update the status of each player to each player
+        broadcastToPlayers(ServerThread.turnStatusPayload(Player.DEFAULT_CLIENT_ID, false));
     }
 
     /**
@@ -250,13 +269,7 @@ public class GameRoom extends BaseGameRoom {
      * @param sp
      */
     private void sendTurnStatus(ServerPlayer sp) {
-        playersInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendTurnStatus(sp.getClientId(), sp.didTakeTurn());
-            if (failedToSend) {
-                removedClient(spInRoom.getServerThread());
-            }
-            return failedToSend;
-        });
+        broadcastToPlayers(ServerThread.turnStatusPayload(sp.getClientId(), sp.didTakeTurn()));
     }
 
     private void syncGridDimensions(ServerPlayer sp) {
@@ -264,13 +277,7 @@ public class GameRoom extends BaseGameRoom {
     }
 
     private void sendGridDimensions() {
-        playersInRoom.values().removeIf(spInRoom -> {
-            boolean failedToSend = !spInRoom.sendGridDimensions(grid.getRows(), grid.getCols());
-            if (failedToSend) {
-                removedClient(spInRoom.getServerThread());
-            }
-            return failedToSend;
-        });
+        broadcastToPlayers(ServerThread.gridDimensionsPayload(grid.getRows(), grid.getCols()));
     }
 
     // end send data to ServerPlayer(s)
@@ -295,6 +302,7 @@ public class GameRoom extends BaseGameRoom {
             grid.setCell(x, y, true);
             sendMove(sp, x, y);
             sp.setTakeTurn(true);
+            invalidateSnapshot();
             sendTurnStatus(sp);
             checkIfAllTookTurns();
 
@@ -323,90 +331,44 @@ public class GameRoom extends BaseGameRoom {
             }
             sendPick(sp, pick);
             
-            sp.getPick();
-            st.setPick(pick);
+            sp.setPick(pick);
    
             LoggerUtil.INSTANCE.info("Player " + sp.getClientId() + " picked: " + pick.toUpperCase());
    
-            checkIfAllTookTurns();
+            // a round end sends turn resets, results, points and phase; flush them together
+            batch(this::checkIfAllTookTurns);
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Error handling pick for clientId: " + st.getClientId(), e);
         }
     }
    
-    private void processBattles(){
-            List<ServerPlayer> activePlayers = playersInRoom.values().stream()
-            .filter(player -> !player.isEliminated())
-            .toList();
-
-
-            for(int i = 0; i < activePlayers.size(); i++){
-                for(int a = 0; a < activePlayers.size(); a++){
-                    ServerPlayer player1 = activePlayers.get(i);
-                    ServerPlayer player2 = activePlayers.get(a);
-
-                    String result = determineBattle(player1,player2);
-
-
-                    sendMessage(null, result);
-
-
-                    if (player1.isEliminated()) {
-                        LoggerUtil.INSTANCE.info("Player " + player1.getClientId() + " is eliminated.");
-                    }
-                    if (player2.isEliminated()) {
-                        LoggerUtil.INSTANCE.info("Player " + player2.getClientId() + " is eliminated.");
-                    }
-                }
-            }
-
-
+    /**
+     * Resolves the round by counting picks (see RoundResult) instead of battling
+     * every pair: winners get a point, losers are eliminated, everyone's pick is
+     * cleared and the room gets one ROUND_RESULT Payload to render followed by
+     * one SCOREBOARD Payload with the new points.
+     * package-private for ServerBenchmarks
+     *
+     * @return the round's outcome
+     */
+    RoundResult processBattles() {
+        RoundResult result = RoundResult.resolve(playersInRoom.values());
+        Payload summary = ServerThread.roundResultPayload(result); // before the picks are cleared
+        for (ServerPlayer winner : result.getWinners()) {
+            winner.add();
+            pointsChanged.add(winner);
         }
-
-
-        private String determineBattle(Player player1, Player player2){
-
-            String pick1 = player1.getPick();
-            String pick2 = player2.getPick();
-
-            if (pick1 == null || pick2 == null) {
-                LoggerUtil.INSTANCE.severe("Invalid picks: pick1=" + pick1 + ", pick2=" + pick2);
-                return "Error: One or both players did not make a valid pick.";
-            }
-
-
-            boolean player1Wins = (pick1.equals("r") && pick2.equals("s")) ||
-            (pick1.equals("p") && pick2.equals("r")) ||
-            (pick1.equals("s") && pick2.equals("p"));
-
-
-            if(player1Wins){
-                player1.add();
-                syncPlayerPoints(player1);
-                player2.setEliminated(true);
-                syncPlayerPoints(player1);
-                return player1.getClientId() + " beats " + player2.getClientId() +
-                " (" + pick1 + " beats " + pick2 + ").";
-            }
-            else{
-                player2.add(); // Increment points
-                player1.setEliminated(true); // Mark the loser eliminated
-                syncPlayerPoints(player2); // Sync points to clients
-                return "Player " + player2.getClientId() + " beats " + player1.getClientId() +
-                        " (" + pick2 + " beats " + pick1 + ").";
-       
-            }
+        if (!result.getWinners().isEmpty()) {
+            invalidateSnapshot();
         }
-
-
-        private void syncPlayerPoints(ServerPlayer player){
-            playersInRoom.values().forEach(sp -> {
-                boolean failedToSend = !sp.sendPoints(player.getClientId(), player.getPoints());
-                if (failedToSend) {
-                    removedClient(sp.getServerThread());
-                }
-            });
+        for (ServerPlayer loser : result.getEliminated()) {
+            loser.setEliminated(true);
         }
-
-
-}
\ No newline at end of file
+        playersInRoom.values().forEach(sp -> sp.setPick(null));
+        LoggerUtil.INSTANCE.info("Round result: " + result);
+        // one Payload for the whole round instead of a message plus POINTS per winner
+        broadcastToPlayers(summary);
+        sendScoreboard();
+        return result;
+    }
+}
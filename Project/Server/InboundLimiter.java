@@ -0,0 +1,91 @@
+package Project.Server;
+
+import Project.Common.PayloadType;
+
+/**
+ * Per connection limits on what a client can make the Server do (see
+ * ServerConfig for the defaults):
+ * - a token bucket per RateClass, payloads over the rate are dropped
+ * - credits: how many of its payloads can wait in its Room's mailbox before
+ * the connection stops being read
+ * - the Room mailbox backlog at which every connection sending to that Room
+ * stops being read until its own payloads were handled
+ */
+public class InboundLimiter {
+    /**
+     * Groups of PayloadTypes sharing a rate limit
+     */
+    public enum RateClass {
+        CONTROL, // connect/disconnect, never limited
+        CHAT, // MESSAGE, fanned out to the whole room
+        GAME, // READY, MOVE, PICK and other game input
+        ROOM; // create/join/list rooms
+
+        public static RateClass of(PayloadType type) {
+            switch (type) {
+                case CLIENT_CONNECT:
+                case DISCONNECT:
+                    return CONTROL;
+                case MESSAGE:
+                    return CHAT;
+                case ROOM_CREATE:
+                case ROOM_JOIN:
+                case ROOM_LIST:
+                    return ROOM;
+                default:
+                    return GAME;
+            }
+        }
+    }
+
+    private final TokenBucket[] buckets = new TokenBucket[RateClass.values().length]; // null = unlimited
+    private final int credits;
+    private final int roomQueueLimit;
+
+    /**
+     * @param config rates and limits
+     */
+    public InboundLimiter(ServerConfig config) {
+        buckets[RateClass.CHAT.ordinal()] = bucket(config.getChatRate(), config.getChatBurst());
+        buckets[RateClass.GAME.ordinal()] = bucket(config.getGameRate(), config.getGameBurst());
+        buckets[RateClass.ROOM.ordinal()] = bucket(config.getRoomRate(), config.getRoomBurst());
+        this.credits = config.getInboundCredits() > 0 ? config.getInboundCredits() : Integer.MAX_VALUE;
+        this.roomQueueLimit = config.getRoomQueueLimit() > 0 ? config.getRoomQueueLimit() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * No rate limits or backpressure (benchmarks and tools that drive a
+     * ServerThread directly)
+     */
+    public InboundLimiter() {
+        this.credits = Integer.MAX_VALUE;
+        this.roomQueueLimit = Integer.MAX_VALUE;
+    }
+
+    private static TokenBucket bucket(int rate, int burst) {
+        return rate > 0 ? new TokenBucket(rate, burst) : null;
+    }
+
+    /**
+     * @param type
+     * @return true if the payload is within its class' rate
+     */
+    public boolean tryAcquire(PayloadType type) {
+        TokenBucket bucket = buckets[RateClass.of(type).ordinal()];
+        return bucket == null || bucket.tryTake();
+    }
+
+    /**
+     * @return payloads that can wait in the Room's mailbox before reading pauses
+     */
+    public int getCredits() {
+        return credits;
+    }
+
+    /**
+     * @return Room mailbox backlog at which reading pauses
+     */
+    public int getRoomQueueLimit() {
+        return roomQueueLimit;
+    }
+}
@@ -0,0 +1,126 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+
+/**
+ * Serves Metrics.INSTANCE.scrape() as plain text at
+ * http://localhost:port/metrics (loopback only).
+ * Also adds the Server's own metrics: room/player/connection gauges, and per
+ * Room and per connection series written at scrape time so nothing is kept
+ * around for rooms and clients that are gone.
+ */
+public class MetricsEndpoint {
+    private final HttpServer http;
+    private final Supplier<Collection<Room>> rooms;
+    private final Consumer<StringBuilder> collector = this::collect;
+
+    /**
+     * @param port  loopback port to listen on
+     * @param rooms the Server's current rooms
+     * @throws IOException if the port can't be bound
+     */
+    public MetricsEndpoint(int port, Supplier<Collection<Room>> rooms) throws IOException {
+        this.rooms = rooms;
+        this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/metrics", this::handle);
+    }
+
+    public void start() {
+        Metrics.INSTANCE.gauge("server_rooms", "", "Rooms that currently exist", () -> rooms.get().size());
+        Metrics.INSTANCE.gauge("server_connections", "", "Clients currently in a Room",
+                () -> sum(rooms.get(), room -> room.getClients().size()));
+        Metrics.INSTANCE.gauge("server_players", "", "Players currently in a GameRoom",
+                () -> sum(rooms.get(), room -> room instanceof BaseGameRoom game ? game.playersInRoom.size() : 0));
+        Metrics.INSTANCE.gauge("server_outbound_flushes", "", "Socket flushes since start",
+                FlushMetrics.INSTANCE::getFlushes);
+        Metrics.INSTANCE.gauge("server_outbound_payloads", "", "Payloads written by those flushes",
+                FlushMetrics.INSTANCE::getPayloads);
+        Metrics.INSTANCE.addCollector(collector);
+        http.start();
+        LoggerUtil.INSTANCE.info("Metrics available at http://localhost:" + http.getAddress().getPort() + "/metrics");
+    }
+
+    public void stop() {
+        Metrics.INSTANCE.removeCollector(collector);
+        http.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = Metrics.INSTANCE.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Per Room and per connection series; each metric's lines have to be
+     * together, so every metric is its own pass over a snapshot of the rooms
+     */
+    private void collect(StringBuilder out) {
+        List<Room> snapshot = new ArrayList<>(rooms.get());
+
+        Metrics.writeHeader(out, "room_clients", "gauge", "Clients in the Room");
+        for (Room room : snapshot) {
+            Metrics.writeValue(out, "room_clients", roomLabel(room), room.getClients().size());
+        }
+
+        writeConnections(out, snapshot, "connection_payloads_received_total", "Payloads received from the client",
+                ServerThread::getPayloadsReceived);
+        writeConnections(out, snapshot, "connection_payloads_sent_total", "Payloads sent to the client",
+                ServerThread::getPayloadsSent);
+        writeConnections(out, snapshot, "connection_bytes_received_total", "Bytes received from the client",
+                ServerThread::getBytesReceived);
+        writeConnections(out, snapshot, "connection_bytes_sent_total", "Bytes written to the client",
+                ServerThread::getBytesSent);
+        writeConnections(out, snapshot, "connection_payloads_throttled_total",
+                "Payloads dropped for going over a rate limit", ServerThread::getPayloadsThrottled);
+    }
+
+    private static void writeConnections(StringBuilder out, List<Room> rooms, String name, String help,
+            ToLongFunction<ServerThread> value) {
+        Metrics.writeHeader(out, name, "counter", help);
+        for (Room room : rooms) {
+            String roomLabel = roomLabel(room);
+            for (ServerThread client : room.getClients()) {
+                Metrics.writeValue(out, name, "client=\"" + client.getClientId() + "\"," + roomLabel,
+                        value.applyAsLong(client));
+            }
+        }
+    }
+
+    private static String roomLabel(Room room) {
+        return "room=\"" + Metrics.escape(room.getName()) + "\"";
+    }
+
+    private static long sum(Collection<Room> rooms, ToLongFunction<Room> value) {
+        long total = 0;
+        for (Room room : rooms) {
+            total += value.applyAsLong(room);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,325 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+import Project.Common.Frame;
+import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+import Project.Common.PayloadCodec;
+
+/**
+ * Non-blocking SocketChannel connection owned by a single NioEventLoop.
+ * Reads and writes only happen on the loop's thread; write() from other
+ * threads just enqueues the frame on the bounded OutboundQueue and wakes the loop.
+ */
+public class NioConnection implements Connection {
+    private static final int INITIAL_READ_BUFFER = 8 * 1024;
+    private static final int MAX_GATHER = 64; // frames handed to a single gathering write
+
+    private final SocketChannel channel;
+    private final NioEventLoop loop;
+    private final OutboundQueue outbound;
+    // frames being written, own views since Frames are shared; [gatherStart, gatherEnd) is unwritten
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private int gatherStart = 0;
+    private int gatherEnd = 0;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+    private BaseServerThread handler;
+    private SelectionKey key;
+    private volatile boolean isOpen = true;
+    private volatile boolean readPaused = false; // see setReadPaused(), the loop applies it to the key
+    private boolean dispatching = false; // loop thread only, inside dispatchFrames()
+    // only updated on the loop's thread, volatile so metrics can read them anywhere
+    private volatile long bytesRead = 0;
+    private volatile long bytesWritten = 0;
+    private volatile long framesWritten = 0;
+
+    public NioConnection(SocketChannel channel, NioEventLoop loop, OutboundQueue outbound) throws IOException {
+        this.channel = channel;
+        this.loop = loop;
+        this.outbound = outbound;
+        channel.configureBlocking(false);
+    }
+
+    /**
+     * Sets who receives decoded Payloads and registers with the event loop
+     *
+     * @param handler
+     */
+    protected void bind(BaseServerThread handler) {
+        this.handler = handler;
+        loop.register(this);
+    }
+
+    /**
+     * Called on the loop thread once the loop picks up the registration
+     */
+    protected void onRegister() {
+        try {
+            key = channel.register(loop.getSelector(), interestOps(false), this);
+            handler.onAttached();
+            flushWrites(); // anything sent before registration completed
+        } catch (ClosedChannelException e) {
+            onClosed();
+        }
+    }
+
+    @Override
+    public void write(Frame frame) throws IOException {
+        if (!outbound.offer(frame)) {
+            close();
+            throw new IOException("Outbound queue overflow or connection closed");
+        }
+        loop.requestWrite(this);
+    }
+
+    @Override
+    public void cork() {
+        outbound.cork();
+    }
+
+    @Override
+    public void uncork() {
+        if (outbound.uncork()) {
+            loop.requestWrite(this);
+        }
+    }
+
+    @Override
+    public void setReadPaused(boolean paused) {
+        readPaused = paused;
+        loop.requestRead(this);
+    }
+
+    /**
+     * Applies readPaused to the SelectionKey (loop thread). On resume the
+     * frames that were already buffered when reading paused are handled first.
+     */
+    protected void updateReadInterest() {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        if (!readPaused && !dispatching) {
+            dispatchFrames();
+            if (!isOpen || !key.isValid()) {
+                return;
+            }
+        }
+        key.interestOps(interestOps((key.interestOps() & SelectionKey.OP_WRITE) != 0));
+    }
+
+    /**
+     * @param writing true while frames are waiting for OP_WRITE
+     * @return OP_READ unless reading is paused, plus OP_WRITE if writing
+     */
+    private int interestOps(boolean writing) {
+        return (readPaused ? 0 : SelectionKey.OP_READ) | (writing ? SelectionKey.OP_WRITE : 0);
+    }
+
+    /**
+     * Writes as much of the outbound queue as the socket accepts; registers
+     * interest in OP_WRITE for whatever is left. Queued frames are batched into
+     * one gathering write. After close() this is the single best-effort flush
+     * before the channel is closed.
+     */
+    protected void flushWrites() {
+        if (key == null || !key.isValid()) {
+            if (!isOpen) {
+                closeChannel();
+            }
+            return;
+        }
+        try {
+            while (true) {
+                int payloads = 0;
+                if (gatherStart == gatherEnd) {
+                    payloads = fillGather();
+                    if (payloads == 0) {
+                        break;
+                    }
+                    framesWritten += payloads;
+                }
+                bytesWritten += channel.write(gather, gatherStart, gatherEnd - gatherStart);
+                FlushMetrics.INSTANCE.record(payloads); // 0 payloads when finishing a partial write
+                while (gatherStart < gatherEnd && !gather[gatherStart].hasRemaining()) {
+                    gather[gatherStart++] = null;
+                }
+                if (gatherStart < gatherEnd) {
+                    if (!isOpen) {
+                        closeChannel(); // closing, don't wait on a slow client
+                        return;
+                    }
+                    // socket buffer is full, wait for OP_WRITE
+                    key.interestOps(interestOps(true));
+                    return;
+                }
+            }
+            if (!isOpen) {
+                closeChannel();
+                return;
+            }
+            key.interestOps(interestOps(false));
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.fine("Write failed, closing connection");
+            onClosed();
+        }
+    }
+
+    /**
+     * Moves up to MAX_GATHER queued frames into the gather array
+     *
+     * @return number of frames added
+     */
+    private int fillGather() {
+        gatherStart = 0;
+        gatherEnd = 0;
+        Frame next;
+        while (gatherEnd < MAX_GATHER && (next = outbound.poll()) != null) {
+            gather[gatherEnd++] = next.buffer();
+        }
+        return gatherEnd;
+    }
+
+    /**
+     * Reads whatever is available and dispatches every complete frame
+     */
+    protected void onReadable() {
+        if (readPaused) {
+            return; // selected before the pause reached the key
+        }
+        try {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                onClosed();
+                return;
+            }
+            bytesRead += read;
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.info("Error reading from client", e);
+            onClosed();
+            return;
+        }
+        dispatchFrames();
+    }
+
+    /**
+     * Hands every complete frame in the read buffer to the handler, stopping
+     * early if reading gets paused; the rest waits in the buffer
+     */
+    private void dispatchFrames() {
+        dispatching = true;
+        try {
+            readBuffer.flip();
+            while (!readPaused && readBuffer.remaining() >= PayloadCodec.HEADER_SIZE) {
+                int length = readBuffer.getInt(readBuffer.position());
+                PayloadCodec.checkFrameLength(length);
+                int frameSize = PayloadCodec.HEADER_SIZE + length;
+                if (readBuffer.remaining() < frameSize) {
+                    ensureCapacity(frameSize);
+                    break;
+                }
+                Payload payload = PayloadCodec.decode(readBuffer.array(),
+                        readBuffer.arrayOffset() + readBuffer.position() + PayloadCodec.HEADER_SIZE, length);
+                readBuffer.position(readBuffer.position() + frameSize);
+                handler.onPayloadReceived(payload);
+                if (!isOpen) {
+                    return;
+                }
+            }
+            readBuffer.compact();
+            if (readBuffer.position() == 0 && readBuffer.capacity() > INITIAL_READ_BUFFER) {
+                // don't keep a large buffer around for the rest of the session after one big frame
+                readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+            }
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.info("Error reading from client", e);
+            onClosed();
+        } catch (RuntimeException e) {
+            // a handler bug only costs this connection, the loop keeps serving the others
+            LoggerUtil.INSTANCE.severe("Error handling a Payload from client, closing its connection", e);
+            onClosed();
+        } finally {
+            dispatching = false;
+        }
+    }
+
+    /**
+     * Grows the (flipped) read buffer so a frame of the given size fits
+     */
+    private void ensureCapacity(int frameSize) {
+        if (readBuffer.capacity() >= frameSize) {
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(frameSize);
+        larger.put(readBuffer);
+        larger.flip();
+        readBuffer = larger;
+    }
+
+    /**
+     * Closes the channel and lets the handler clean up (loop thread)
+     */
+    protected void onClosed() {
+        boolean wasOpen = isOpen;
+        isOpen = false;
+        outbound.close();
+        closeChannel();
+        if (wasOpen && handler != null) {
+            handler.onConnectionLost();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    @Override
+    public long getFramesDiscarded() {
+        return outbound.getDropped() + outbound.getCoalesced();
+    }
+
+    /**
+     * Stops accepting Frames; the loop flushes what's already queued (e.g. a
+     * final DISCONNECT notice) as far as the socket allows, then closes
+     */
+    @Override
+    public void close() {
+        isOpen = false;
+        if (outbound.close()) {
+            loop.requestWrite(this);
+        }
+    }
+
+    private void closeChannel() {
+        outbound.clear();
+        Arrays.fill(gather, null);
+        gatherStart = 0;
+        gatherEnd = 0;
+        try {
+            channel.close(); // also cancels the SelectionKey
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package Project.Server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import Project.Common.LoggerUtil;
+
+/**
+ * A single selector thread that multiplexes reads and writes for many
+ * NioConnections. The Server owns a small fixed pool of these.
+ */
+public class NioEventLoop implements Runnable {
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<NioConnection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final Queue<NioConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Queue<NioConnection> pendingReads = new ConcurrentLinkedQueue<>();
+    private volatile boolean isRunning = false;
+
+    public NioEventLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        isRunning = true;
+        thread.start();
+    }
+
+    /**
+     * @return true if the caller is this loop's selector thread
+     */
+    protected boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Hands a freshly accepted connection to this loop (safe from any thread)
+     *
+     * @param connection
+     */
+    protected void register(NioConnection connection) {
+        pendingRegistrations.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Asks the loop to drain a connection's outbound queue
+     *
+     * @param connection
+     */
+    protected void requestWrite(NioConnection connection) {
+        if (inEventLoop()) {
+            connection.flushWrites();
+            return;
+        }
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Asks the loop to pause or resume reading a connection (see
+     * NioConnection.setReadPaused())
+     *
+     * @param connection
+     */
+    protected void requestRead(NioConnection connection) {
+        if (inEventLoop()) {
+            connection.updateReadInterest();
+            return;
+        }
+        pendingReads.add(connection);
+        selector.wakeup();
+    }
+
+    protected Selector getSelector() {
+        return selector;
+    }
+
+    @Override
+    public void run() {
+        LoggerUtil.INSTANCE.info(String.format("%s started", thread.getName()));
+        try {
+            while (isRunning) {
+                selector.select();
+                NioConnection connection;
+                while ((connection = pendingRegistrations.poll()) != null) {
+                    runFor(connection, connection::onRegister);
+                }
+                while ((connection = pendingWrites.poll()) != null) {
+                    runFor(connection, connection::flushWrites);
+                }
+                while ((connection = pendingReads.poll()) != null) {
+                    runFor(connection, connection::updateReadInterest);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection selected = (NioConnection) key.attachment();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    runFor(selected, () -> {
+                        if (key.isReadable()) {
+                            selected.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            selected.flushWrites();
+                        }
+                    });
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (isRunning) {
+                LoggerUtil.INSTANCE.severe(String.format("%s selector failure", thread.getName()), e);
+            }
+        } finally {
+            isRunning = false;
+            closeAll();
+        }
+        LoggerUtil.INSTANCE.info(String.format("%s stopped", thread.getName()));
+    }
+
+    /**
+     * Runs work for one connection; an unexpected exception closes that
+     * connection (its handler hears about it through onClosed()) instead of
+     * ending the loop and every other connection on it
+     *
+     * @param connection
+     * @param work
+     */
+    private void runFor(NioConnection connection, Runnable work) {
+        try {
+            work.run();
+        } catch (RuntimeException e) {
+            LoggerUtil.INSTANCE.severe(String.format("%s closing a connection after an unexpected error",
+                    thread.getName()), e);
+            try {
+                connection.onClosed();
+            } catch (RuntimeException closeError) {
+                LoggerUtil.INSTANCE.severe("Error closing connection", closeError);
+            }
+        }
+    }
+
+    /**
+     * Stops the loop and closes every connection it owns
+     */
+    public void shutdown() {
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    private void closeAll() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                ((NioConnection) key.attachment()).onClosed();
+            }
+            selector.close();
+        } catch (IOException | ClosedSelectorException e) {
+            LoggerUtil.INSTANCE.info("Error closing selector", e);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package Project.Server;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import Project.Common.Frame;
+import Project.Common.PayloadType;
+
+/**
+ * Bounded per-connection queue of outbound Frames.
+ * Senders (rooms, timers) only enqueue; the connection's writer drains it, so a
+ * client with a full TCP window can't stall whoever is broadcasting.
+ */
+public class OutboundQueue {
+    /**
+     * What to do when a Frame arrives and the queue is full
+     */
+    public enum OverflowPolicy {
+        DROP_OLDEST_CHAT, // discard the oldest queued MESSAGE (or the new one if none is queued)
+        DISCONNECT, // the client can't keep up, drop the connection
+        COALESCE_STATE, // replace an older queued state update for the same client, else drop chat
+    }
+
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean isClosed = false;
+    private int corks = 0; // while > 0 the writer holds frames back so a batch goes out in one flush
+    private long dropped = 0;
+    private long coalesced = 0;
+
+    public OutboundQueue(int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * Enqueues a Frame, applying the overflow policy if the queue is full
+     *
+     * @param frame
+     * @return false if the connection should be closed (closed queue, DISCONNECT
+     *         policy or nothing that can be safely discarded)
+     */
+    public boolean offer(Frame frame) {
+        lock.lock();
+        try {
+            if (isClosed) {
+                return false;
+            }
+            if (frames.size() >= capacity) {
+                switch (makeSpace(frame)) {
+                    case ACCEPT:
+                        break;
+                    case DISCARD:
+                        dropped++;
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+            frames.addLast(frame);
+            if (corks == 0) {
+                notEmpty.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private enum OverflowResult {
+        ACCEPT, // space was made, enqueue the incoming frame
+        DISCARD, // drop the incoming frame
+        REJECT, // overflow is fatal for the connection
+    }
+
+    private OverflowResult makeSpace(Frame incoming) {
+        if (policy == OverflowPolicy.DISCONNECT) {
+            return OverflowResult.REJECT;
+        }
+        if (policy == OverflowPolicy.COALESCE_STATE && isState(incoming)
+                && removeFirst(queued -> queued.getPayloadType() == incoming.getPayloadType()
+                        && queued.getClientId() == incoming.getClientId())) {
+            // latest state wins; appended at the end so it stays ordered after anything queued since
+            coalesced++;
+            return OverflowResult.ACCEPT;
+        }
+        if (removeFirst(queued -> queued.getPayloadType() == PayloadType.MESSAGE)) {
+            dropped++;
+            return OverflowResult.ACCEPT;
+        }
+        // queue is all state/control frames, chat is the only thing we can lose
+        return incoming.getPayloadType() == PayloadType.MESSAGE ? OverflowResult.DISCARD : OverflowResult.REJECT;
+    }
+
+    /**
+     * State payloads only matter for their latest value per client.
+     * POINTS isn't one: it carries a change the Client adds up, so replacing
+     * an older one would lose that change
+     */
+    private static boolean isState(Frame frame) {
+        switch (frame.getPayloadType()) {
+            case PHASE:
+            case GRID_DIMENSION:
+            case READY:
+            case SYNC_READY:
+            case TURN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean removeFirst(Predicate<Frame> match) {
+        Iterator<Frame> iterator = frames.iterator();
+        while (iterator.hasNext()) {
+            if (match.test(iterator.next())) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Holds queued Frames back from the writer until the matching uncork().
+     * Calls nest; closing the queue releases everything regardless.
+     */
+    public void cork() {
+        lock.lock();
+        try {
+            corks++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends a cork() section
+     *
+     * @return true if this released the queue and there are Frames to write
+     */
+    public boolean uncork() {
+        lock.lock();
+        try {
+            if (corks > 0) {
+                corks--;
+            }
+            if (corks == 0 && !frames.isEmpty()) {
+                notEmpty.signal();
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isHeld() {
+        return corks > 0 && !isClosed;
+    }
+
+    /**
+     * Non-blocking removal of the next Frame
+     *
+     * @return the next Frame or null if empty (or corked)
+     */
+    public Frame poll() {
+        lock.lock();
+        try {
+            return isHeld() ? null : frames.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the next Frame
+     *
+     * @return the next Frame, or null once the queue is closed
+     * @throws InterruptedException
+     */
+    public Frame take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (frames.isEmpty() || isHeld()) {
+                if (isClosed && frames.isEmpty()) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            return frames.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return frames.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rejects further Frames; already queued Frames can still be drained
+     *
+     * @return true if this call closed the queue, false if it already was
+     */
+    public boolean close() {
+        lock.lock();
+        try {
+            if (isClosed) {
+                return false;
+            }
+            isClosed = true;
+            notEmpty.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards anything still queued (the connection is gone)
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            frames.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of Frames discarded by the overflow policy
+     */
+    public long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of queued state Frames replaced by a newer one
+     */
+    public long getCoalesced() {
+        lock.lock();
+        try {
+            return coalesced;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
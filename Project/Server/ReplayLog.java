@@ -0,0 +1,59 @@
+package Project.Server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import Project.Common.Frame;
+
+/**
+ * The last few Frames sent in a session, numbered from 0 (the CLIENT_ID that
+ * starts the session isn't counted). A Client that reconnects says how many
+ * Frames it received, which is enough to pick up where it left off: TCP
+ * delivered them in order, so every Frame after that count is one it missed.
+ * Frames are shared with everyone else who got the same broadcast, so keeping
+ * them only costs a reference each.
+ * ServerThread holds the lock while it both appends and writes a Frame so the
+ * log is in the same order as the socket.
+ */
+public class ReplayLog {
+    private final Frame[] frames;
+    private long next = 0; // number of the next Frame appended
+
+    /**
+     * @param capacity how many of the most recent Frames to keep
+     */
+    public ReplayLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.frames = new Frame[capacity];
+    }
+
+    public synchronized void append(Frame frame) {
+        frames[(int) (next % frames.length)] = frame;
+        next++;
+    }
+
+    /**
+     * @return Frames appended so far
+     */
+    public synchronized long size() {
+        return next;
+    }
+
+    /**
+     * @param received Frames the Client got
+     * @return the Frames after the first received ones, null if some of them
+     *         aren't kept anymore (or received is more than was ever sent)
+     */
+    public synchronized List<Frame> since(long received) {
+        if (received < 0 || received > next || next - received > frames.length) {
+            return null;
+        }
+        List<Frame> missed = new ArrayList<>((int) (next - received));
+        for (long i = received; i < next; i++) {
+            missed.add(frames[(int) (i % frames.length)]);
+        }
+        return missed;
+    }
+}
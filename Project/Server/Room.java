@@ -1,22 +1,58 @@
 package Project.Server;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
 
+import Project.Common.Frame;
+import Project.Common.Histogram;
 import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+import Project.Common.Payload;
+import Project.Common.RoomSnapshotPayload;
 
 public class Room implements AutoCloseable{
     private String name;// unique name of the Room
     protected volatile boolean isRunning = false;
     private ConcurrentHashMap<Long, ServerThread> clientsInRoom = new ConcurrentHashMap<Long, ServerThread>();
+    // all room state changes run as tasks on this, one at a time (see execute())
+    private final RoomMailbox mailbox;
+    // how long each broadcast (the send* methods) takes to encode and queue for every recipient;
+    // shared by all Rooms, there can be tens of thousands of them and a Histogram is ~9.5KB
+    protected static final Histogram BROADCAST_TIME = Metrics.INSTANCE.histogram("room_broadcast_seconds", "",
+            "Time to send one payload to a whole Room");
 
     public final static String LOBBY = "lobby";
+    // longest room name createRoom() accepts, the RoomIndex keeps a set entry per piece of every name
+    public static final int MAX_NAME_LENGTH = 64;
+    // pages sent per ROOM_LIST request, so one request costs at most this many pages of work
+    private static final int ROOM_LIST_PAGES = 5;
+    // joins a cached snapshot is followed by before it's rebuilt (see syncRoomList())
+    private static final int SNAPSHOT_MAX_JOINS = 64;
+    private static final LongAdder SNAPSHOTS_BUILT = Metrics.INSTANCE.counter("server_room_snapshots_built_total", "",
+            "Room snapshots encoded for joining clients");
+    private static final LongAdder SNAPSHOTS_REUSED = Metrics.INSTANCE.counter("server_room_snapshots_reused_total",
+            "", "Joins served from an already encoded room snapshot");
+
+    // what a joiner needs to know about everyone here, null until a join needs it or
+    // after something in it changed; only touched on the mailbox
+    private Frame snapshot = null;
+    // SYNC_CLIENT Frames of the clients who joined after snapshot was built
+    private final List<Frame> joinedSinceSnapshot = new ArrayList<>();
 
     private void info(String message) {
-        LoggerUtil.INSTANCE.info(String.format("Room[%s]: %s", name, message));
+        if (LoggerUtil.INSTANCE.isLoggable(Level.INFO)) {
+            LoggerUtil.INSTANCE.info("Room[" + name + "]: " + message);
+        }
     }
 
     public Room(String name) {
         this.name = name;
+        this.mailbox = new RoomMailbox(name);
         isRunning = true;
         info("created");
     }
@@ -25,7 +61,43 @@ public class Room implements AutoCloseable{
         return this.name;
     }
 
-    protected synchronized void addClient(ServerThread client) {
+    /**
+     * @return live view of the clients in this Room (for metrics)
+     */
+    Collection<ServerThread> getClients() {
+        return clientsInRoom.values();
+    }
+
+    /**
+     * @return tasks waiting on this Room's mailbox (for backpressure and metrics)
+     */
+    int getQueuedTasks() {
+        return mailbox.getQueued();
+    }
+
+    /**
+     * Runs a task on this Room's mailbox.
+     * Player input, joins/leaves and timer callbacks all come through here, so
+     * they never run concurrently for the same Room and no lock is needed.
+     * Calls made from a task already running on this Room run immediately.
+     * 
+     * @param task
+     */
+    public void execute(Runnable task) {
+        mailbox.execute(task);
+    }
+
+    /**
+     * Queues a task on this Room's mailbox behind everything already posted,
+     * even when called from a task running on this Room
+     * 
+     * @param task
+     */
+    public void post(Runnable task) {
+        mailbox.post(task);
+    }
+
+    protected void addClient(ServerThread client) {
         if (!isRunning) { // block action if Room isn't running
             return;
         }
@@ -34,7 +106,10 @@ public class Room implements AutoCloseable{
             return;
         }
         clientsInRoom.put(client.getClientId(), client);
-        client.setCurrentRoom(this);
+        if (client.getCurrentRoom() == null) {
+            // Server.joinRoom() already routes the client here before this task runs
+            client.setCurrentRoom(this);
+        }
 
         // notify clients of someone joining
         sendRoomStatus(client.getClientId(), client.getClientName(), true);
@@ -45,7 +120,7 @@ public class Room implements AutoCloseable{
 
     }
 
-    protected synchronized void removedClient(ServerThread client) {
+    protected void removedClient(ServerThread client) {
         if (!isRunning) { // block action if Room isn't running
             return;
         }
@@ -53,6 +128,7 @@ public class Room implements AutoCloseable{
         // happen before removal so leaving client gets the data
         sendRoomStatus(client.getClientId(), client.getClientName(), false);
         clientsInRoom.remove(client.getClientId());
+        invalidateSnapshot();
         LoggerUtil.INSTANCE.fine("Clients remaining in Room: " + clientsInRoom.size());
 
         info(String.format("%s[%s] left the room", client.getClientName(), client.getClientId(), getName()));
@@ -63,21 +139,20 @@ public class Room implements AutoCloseable{
 
     /**
      * Takes a ServerThread and removes them from the Server
-     * Adding the synchronized keyword ensures that only one thread can execute
-     * these methods at a time,
-     * preventing concurrent modification issues and ensuring thread safety
      * 
      * @param client
      */
-    protected synchronized void disconnect(ServerThread client) {
+    protected void disconnect(ServerThread client) {
         if (!isRunning) { // block action if Room isn't running
             return;
         }
         long id = client.getClientId();
         sendDisconnect(client);
         client.disconnect();
+        Server.INSTANCE.getSessions().close(client); // gone for good, it can't be resumed
         // removedClient(client); // <-- use this just for normal room leaving
         clientsInRoom.remove(client.getClientId());
+        invalidateSnapshot();
         LoggerUtil.INSTANCE.fine("Clients remaining in Room: " + clientsInRoom.size());
         
         // Improved logging with user data
@@ -85,7 +160,78 @@ public class Room implements AutoCloseable{
         autoCleanup();
     }
 
-    protected synchronized void disconnectAll() {
+    /**
+     * Handles a client whose connection ended (closed by either side, failed a
+     * send, or was reaped for being idle): if its session can be resumed it
+     * stays for the grace period (see SessionRegistry), otherwise it's removed
+     * now. Posted by ServerThread.cleanup(), so it never runs inside a
+     * broadcast.
+     * 
+     * @param client
+     */
+    protected void detachClient(ServerThread client) {
+        if (!isRunning || clientsInRoom.get(client.getClientId()) != client) {
+            // already left, disconnected the normal way or dropped on its way here (the join
+            // gave up, see Server.transfer()); nothing keeps it, so its session goes too (no-op
+            // if a resumed connection holds the session now)
+            Server.INSTANCE.getSessions().close(client);
+            return;
+        }
+        if (Server.INSTANCE.getSessions().park(client, this)) {
+            info(String.format("Keeping disconnected client[%s] for resume", client.getClientId()));
+            return;
+        }
+        removeDeadClient(client);
+    }
+
+    /**
+     * Removes a client whose connection ended and tells the others
+     * 
+     * @param client
+     * @return false if it wasn't here anymore (left, disconnected the normal way
+     *         or its session was resumed)
+     */
+    protected boolean removeDeadClient(ServerThread client) {
+        if (!isRunning || clientsInRoom.get(client.getClientId()) != client) {
+            return false;
+        }
+        info(String.format("Removing disconnected client[%s] from list", client.getClientId()));
+        disconnect(client);
+        return true;
+    }
+
+    /**
+     * Puts a new connection in the place of a client kept for resume; the
+     * others don't see a leave or join, and the new connection gets CLIENT_ID
+     * and the Frames it missed instead of a full sync
+     * 
+     * @param parked   the client whose connection dropped
+     * @param client   the new connection, done with its handshake
+     * @param received Frames the client says it got in the session
+     * @return false if the session can't be resumed (parked isn't here anymore
+     *         or missed more Frames than are kept); the caller starts a new one
+     */
+    protected boolean resumeClient(ServerThread parked, ServerThread client, long received) {
+        if (!isRunning || clientsInRoom.get(parked.getClientId()) != parked) {
+            return false;
+        }
+        List<Frame> missed = parked.missedFrames(received);
+        if (missed == null) {
+            removeDeadClient(parked); // too far behind, everyone learns it's gone
+            return false;
+        }
+        client.routeTo(this, () -> {
+            // already on this Room's mailbox, its payloads queue behind this task
+        });
+        clientsInRoom.put(parked.getClientId(), client);
+        client.resumeSession(parked, missed);
+        Server.INSTANCE.getSessions().resumed(parked, client, missed.size());
+        info(String.format("%s[%s] resumed, replayed %s", client.getClientName(), client.getClientId(),
+                missed.size()));
+        return true;
+    }
+
+    protected void disconnectAll() {
         info("Disconnect All triggered");
         if (!isRunning) {
             return;
@@ -125,34 +271,115 @@ public class Room implements AutoCloseable{
 
     // send/sync data to client(s)
 
+    /**
+     * Runs work that sends several payloads (e.g. a round end) with every
+     * client's output corked, so each client gets one flush instead of one per
+     * payload
+     * 
+     * @param work
+     */
+    protected void batch(Runnable work) {
+        List<ServerThread> corked = new ArrayList<>(clientsInRoom.values());
+        corked.forEach(ServerThread::cork);
+        try {
+            work.run();
+        } finally {
+            corked.forEach(ServerThread::uncork);
+        }
+    }
+
+    /**
+     * Encodes the payload once and sends the same bytes to every client in the
+     * room.
+     * Note: Clients that fail to receive it close their connection, which queues
+     * their removal (see removeDeadClient()) behind this task instead of
+     * disconnecting them in the middle of the loop.
+     * 
+     * @param payload
+     */
+    protected void broadcast(Payload payload) {
+        long start = System.nanoTime();
+        Frame frame;
+        try {
+            frame = Frame.of(payload);
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe("Could not encode broadcast: " + payload, e);
+            return;
+        }
+        for (ServerThread client : clientsInRoom.values()) {
+            client.sendFrame(frame);
+        }
+        BROADCAST_TIME.recordSince(start);
+    }
+
     /**
      * Sends to all clients details of a disconnect client
      * @param client
      */
-    protected synchronized void sendDisconnect(ServerThread client) {
-        info(String.format("sending disconnect status to %s recipients", clientsInRoom.size()));
-        clientsInRoom.values().removeIf(clientInRoom -> {
-            boolean failedToSend = !clientInRoom.sendDisconnect(client.getClientId(), client.getClientName());
-            if (failedToSend) {
-                info(String.format("Removing disconnected client[%s] from list", client.getClientId()));
-                disconnect(client);
-            }
-            return failedToSend;
-        });
+    protected void sendDisconnect(ServerThread client) {
+        if (LoggerUtil.INSTANCE.isLoggable(Level.INFO)) {
+            info(String.format("sending disconnect status to %s recipients", clientsInRoom.size()));
+        }
+        broadcast(ServerThread.disconnectPayload(client.getClientId(), client.getClientName()));
     }
 
     /**
-     * Syncs info of existing users in room with the client
+     * Syncs everyone in the room to a joiner with one ROOM_SNAPSHOT Payload.
+     * The snapshot is encoded once and shared by every joiner until something
+     * in it changes (see invalidateSnapshot()). Clients that joined after it
+     * was built follow it as SYNC_CLIENT Frames (also encoded once each), so a
+     * burst of joins doesn't re-encode the whole room for every joiner.
      * 
      * @param client
      */
-    protected synchronized void syncRoomList(ServerThread client) {
-
-        clientsInRoom.values().forEach(clientInRoom -> {
-            if (clientInRoom.getClientId() != client.getClientId()) {
-                client.sendClientSync(clientInRoom.getClientId(), clientInRoom.getClientName());
+    protected void syncRoomList(ServerThread client) {
+        if (snapshot == null) {
+            try {
+                snapshot = Frame.of(snapshotPayload());
+            } catch (IOException e) {
+                LoggerUtil.INSTANCE.severe("Could not encode room snapshot", e);
+                return;
             }
-        });
+            SNAPSHOTS_BUILT.increment();
+            client.sendFrame(snapshot); // the joiner is already in it
+            return;
+        }
+        SNAPSHOTS_REUSED.increment();
+        client.sendFrame(snapshot);
+        for (Frame joined : joinedSinceSnapshot) {
+            client.sendFrame(joined);
+        }
+        if (joinedSinceSnapshot.size() >= SNAPSHOT_MAX_JOINS) {
+            invalidateSnapshot(); // the next joiner gets a fresh one
+            return;
+        }
+        try {
+            joinedSinceSnapshot.add(Frame.of(ServerThread.clientSyncPayload(client.getClientId(),
+                    client.getClientName())));
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe("Could not encode client sync", e);
+            invalidateSnapshot();
+        }
+    }
+
+    /**
+     * @return the room's current members for a joiner (see syncRoomList())
+     */
+    protected RoomSnapshotPayload snapshotPayload() {
+        RoomSnapshotPayload rsp = new RoomSnapshotPayload();
+        for (ServerThread clientInRoom : clientsInRoom.values()) {
+            rsp.addMember(clientInRoom.getClientId(), clientInRoom.getClientName());
+        }
+        return rsp;
+    }
+
+    /**
+     * Drops the cached snapshot; call after any change to what
+     * snapshotPayload() returns other than a join
+     */
+    protected void invalidateSnapshot() {
+        snapshot = null;
+        joinedSinceSnapshot.clear();
     }
 
     /**
@@ -162,16 +389,11 @@ public class Room implements AutoCloseable{
      * @param clientName
      * @param isConnect
      */
-    protected synchronized void sendRoomStatus(long clientId, String clientName, boolean isConnect) {
-        info(String.format("sending room status to %s recipients", clientsInRoom.size()));
-        clientsInRoom.values().removeIf(client -> {
-            boolean failedToSend = !client.sendRoomAction(clientId, clientName, getName(), isConnect);
-            if (failedToSend) {
-                info(String.format("Removing disconnected client[%s] from list", client.getClientId()));
-                disconnect(client);
-            }
-            return failedToSend;
-        });
+    protected void sendRoomStatus(long clientId, String clientName, boolean isConnect) {
+        if (LoggerUtil.INSTANCE.isLoggable(Level.INFO)) {
+            info(String.format("sending room status to %s recipients", clientsInRoom.size()));
+        }
+        broadcast(ServerThread.roomActionPayload(clientId, clientName, getName(), isConnect));
     }
 
     /**
@@ -179,15 +401,12 @@ public class Room implements AutoCloseable{
      * Internally calls processCommand and evaluates as necessary.
      * Note: Clients that fail to receive a message get removed from
      * connectedClients.
-     * Adding the synchronized keyword ensures that only one thread can execute
-     * these methods at a time,
-     * preventing concurrent modification issues and ensuring thread safety
      * 
      * @param message
      * @param sender  ServerThread (client) sending the message or null if it's a
      *                server-generated message
      */
-    protected synchronized void sendMessage(ServerThread sender, String message) {
+    protected void sendMessage(ServerThread sender, String message) {
         if (!isRunning) { // block action if Room isn't running
             return;
         }
@@ -195,25 +414,22 @@ public class Room implements AutoCloseable{
         // Note: any desired changes to the message must be done before this section
         long senderId = sender == null ? ServerThread.DEFAULT_CLIENT_ID : sender.getClientId();
 
-        // loop over clients and send out the message; remove client if message failed
-        // to be sent
-        // Note: this uses a lambda expression for each item in the values() collection,
-        // it's one way we can safely remove items during iteration
-        info(String.format("sending message to %s recipients: %s", clientsInRoom.size(), message));
-        clientsInRoom.values().removeIf(client -> {
-            boolean failedToSend = !client.sendMessage(senderId, message);
-            if (failedToSend) {
-                info(String.format("Removing disconnected client[%s] from list", client.getClientId()));
-                disconnect(client);
-            }
-            return failedToSend;
-        });
+        // encode the message once and send it to every client; broadcast() removes
+        // clients the message failed to be sent to
+        if (LoggerUtil.INSTANCE.isLoggable(Level.INFO)) { // skip building the line when INFO is off
+            info(String.format("sending message to %s recipients: %s", clientsInRoom.size(), message));
+        }
+        broadcast(ServerThread.messagePayload(senderId, message));
     }
     // end send data to client(s)
 
     // receive data from ServerThread
     
     protected void handleCreateRoom(ServerThread sender, String room) {
+        if (room == null || room.isBlank() || room.length() > MAX_NAME_LENGTH) {
+            sender.sendMessage(String.format("Room names must be 1 to %s characters", MAX_NAME_LENGTH));
+            return;
+        }
         if (Server.INSTANCE.createRoom(room)) {
             Server.INSTANCE.joinRoom(room, sender);
         } else {
@@ -227,8 +443,25 @@ public class Room implements AutoCloseable{
         }
     }
 
-    protected void handleListRooms(ServerThread sender, String roomQuery){
-        sender.sendRooms(Server.INSTANCE.listRooms(roomQuery));
+    /**
+     * Streams up to ROOM_LIST_PAGES pages of matching room names, one Payload
+     * per page; the client continues from the last page's cursor
+     * 
+     * @param sender
+     * @param roomQuery part of the name, empty for all rooms
+     * @param cursor    from the previous response, null to start over
+     * @param limit     page size, 0 for the default
+     */
+    protected void handleListRooms(ServerThread sender, String roomQuery, String cursor, int limit) {
+        String after = cursor;
+        for (int page = 1; page <= ROOM_LIST_PAGES; page++) {
+            RoomIndex.Page result = Server.INSTANCE.listRooms(roomQuery, after, limit);
+            after = result.getNext();
+            boolean last = after == null || page == ROOM_LIST_PAGES;
+            if (!sender.sendRooms(result.getRooms(), after, last) || last) {
+                return;
+            }
+        }
     }
 
     protected void clientDisconnect(ServerThread sender) {
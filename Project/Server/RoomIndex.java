@@ -0,0 +1,242 @@
+package Project.Server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Search index over room names so listing rooms doesn't scan every room.
+ * Every 1, 2 and 3 character piece (gram) of a lowercase name points to the
+ * sorted set of names containing it:
+ * - queries up to 3 characters are a single lookup
+ * - longer queries walk the smallest set among their 3 character grams and
+ * keep the names that really contain the query
+ * - an empty query walks all names
+ * Results come back in name order one page at a time; the last name of a
+ * page is the cursor for the next, so pages stay consistent while rooms come
+ * and go.
+ * Recent pages are cached until the next add/remove.
+ */
+public class RoomIndex {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_GRAM = 3;
+    private static final int MAX_CACHED = 1024;
+
+    // lowercase name -> name as created
+    private final ConcurrentSkipListMap<String, String> names = new ConcurrentSkipListMap<>();
+    // gram -> lowercase names containing it
+    private final ConcurrentHashMap<String, Posting> grams = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CachedPage> cache = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong(); // bumped by every add/remove
+
+    /**
+     * One page of matching room names
+     */
+    public static class Page {
+        private final List<String> rooms;
+        private final String next;
+
+        Page(List<String> rooms, String next) {
+            this.rooms = rooms;
+            this.next = next;
+        }
+
+        /**
+         * @return room names in name order
+         */
+        public List<String> getRooms() {
+            return rooms;
+        }
+
+        /**
+         * @return cursor for the following page, null if this was the last one
+         */
+        public String getNext() {
+            return next;
+        }
+    }
+
+    private record CachedPage(long version, Page page) {
+    }
+
+    /**
+     * Names containing one gram; keeps its own count since size() on a skip
+     * list set walks the whole set
+     */
+    private static class Posting extends ConcurrentSkipListSet<String> {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public boolean add(String key) {
+            boolean added = super.add(key);
+            if (added) {
+                count.incrementAndGet();
+            }
+            return added;
+        }
+
+        @Override
+        public boolean remove(Object key) {
+            boolean removed = super.remove(key);
+            if (removed) {
+                count.decrementAndGet();
+            }
+            return removed;
+        }
+
+        int count() {
+            return count.get();
+        }
+    }
+
+    /**
+     * @param name room name as created
+     */
+    public void add(String name) {
+        String key = name.toLowerCase();
+        names.put(key, name);
+        forEachGram(key, gram -> grams.compute(gram, (g, posting) -> {
+            Posting updated = posting == null ? new Posting() : posting;
+            updated.add(key);
+            return updated;
+        }));
+        invalidate();
+    }
+
+    /**
+     * @param name room name as created
+     */
+    public void remove(String name) {
+        String key = name.toLowerCase();
+        if (names.remove(key) == null) {
+            return;
+        }
+        // add()/remove() change a gram's set inside compute so an add can't land in a set that's being dropped
+        forEachGram(key, gram -> grams.computeIfPresent(gram, (g, posting) -> {
+            posting.remove(key);
+            return posting.count() == 0 ? null : posting;
+        }));
+        invalidate();
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Finds rooms whose name contains the query (case-insensitive)
+     *
+     * @param query substring to look for, empty for every room (longer than
+     *              Room.MAX_NAME_LENGTH matches nothing)
+     * @param after cursor from the previous page's getNext(), null for the first
+     *              page
+     * @param limit page size, capped at MAX_PAGE_SIZE (less than 1 means the
+     *              default)
+     * @return up to limit names after the cursor
+     */
+    public Page search(String query, String after, int limit) {
+        String q = query == null ? "" : query.trim().toLowerCase();
+        String cursor = after == null ? "" : after.toLowerCase();
+        int size = limit < 1 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        if (q.length() > Room.MAX_NAME_LENGTH) {
+            return new Page(Collections.emptyList(), null); // no name can contain it
+        }
+        if (cursor.length() > Room.MAX_NAME_LENGTH) {
+            return find(q, cursor, size); // not a real cursor, don't let it take up the cache
+        }
+        String cacheKey = q + '\n' + cursor + '\n' + size;
+        long currentVersion = version.get();
+        CachedPage cached = cache.get(cacheKey);
+        if (cached != null && cached.version() == currentVersion) {
+            return cached.page();
+        }
+        Page page = find(q, cursor, size);
+        if (cache.size() >= MAX_CACHED) {
+            cache.clear();
+        }
+        // tagged with the version from before the search; if rooms changed meanwhile it's never used
+        cache.put(cacheKey, new CachedPage(currentVersion, page));
+        return page;
+    }
+
+    private Page find(String q, String cursor, int size) {
+        NavigableSet<String> candidates = candidates(q);
+        if (candidates.isEmpty()) {
+            return new Page(Collections.emptyList(), null);
+        }
+        Iterator<String> it = (cursor.isEmpty() ? candidates : candidates.tailSet(cursor, false)).iterator();
+        List<String> rooms = new ArrayList<>(Math.min(size, 16));
+        String last = null;
+        while (it.hasNext()) {
+            String key = it.next();
+            // longer queries only matched one gram so far; the name may also be gone by now
+            String name = names.get(key);
+            if (name == null || (q.length() > MAX_GRAM && !key.contains(q))) {
+                continue;
+            }
+            if (rooms.size() == size) {
+                return new Page(rooms, last); // there's at least one more
+            }
+            rooms.add(name);
+            last = key;
+        }
+        return new Page(rooms, null);
+    }
+
+    /**
+     * @return sorted names that may contain q (exactly the matches for q up to
+     *         MAX_GRAM characters)
+     */
+    private NavigableSet<String> candidates(String q) {
+        if (q.isEmpty()) {
+            return names.keySet();
+        }
+        if (q.length() <= MAX_GRAM) {
+            NavigableSet<String> set = grams.get(q);
+            return set == null ? Collections.emptyNavigableSet() : set;
+        }
+        Posting smallest = null;
+        for (int i = 0; i + MAX_GRAM <= q.length(); i++) {
+            Posting posting = grams.get(q.substring(i, i + MAX_GRAM));
+            if (posting == null) {
+                return Collections.emptyNavigableSet(); // some part of q isn't in any name
+            }
+            if (smallest == null || posting.count() < smallest.count()) {
+                smallest = posting;
+            }
+        }
+        return smallest;
+    }
+
+    private void invalidate() {
+        version.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * Calls consumer once for every distinct 1 to MAX_GRAM character piece of
+     * key
+     */
+    private static void forEachGram(String key, Consumer<String> consumer) {
+        Set<String> seen = new HashSet<>();
+        for (int length = 1; length <= MAX_GRAM; length++) {
+            for (int i = 0; i + length <= key.length(); i++) {
+                String gram = key.substring(i, i + length);
+                if (seen.add(gram)) {
+                    consumer.accept(gram);
+                }
+            }
+        }
+    }
+}
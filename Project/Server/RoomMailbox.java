@@ -0,0 +1,111 @@
+package Project.Server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import Project.Common.LoggerUtil;
+
+/**
+ * A Room's queue of work (actor style mailbox).
+ * Tasks for one Room run one at a time and in the order they were posted, so
+ * room state never needs a lock. Every Room shares the same small worker pool;
+ * a Room only occupies a worker while it has tasks queued.
+ */
+public class RoomMailbox {
+    private static final int MAX_TASKS_PER_TURN = 64; // then give other rooms a turn on the worker
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            Thread.ofPlatform().name("RoomWorker-", 0).daemon(true).factory());
+
+    private final String name;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger(); // tasks.size() walks the whole queue
+    private final AtomicBoolean isScheduled = new AtomicBoolean(false);
+    private volatile Thread runner; // worker currently draining this mailbox
+
+    public RoomMailbox(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Posts a task. If the caller is already running one of this mailbox's tasks
+     * it runs immediately instead, keeping nested room calls in order.
+     *
+     * @param task
+     */
+    public void execute(Runnable task) {
+        if (inMailbox()) {
+            runTask(task);
+            return;
+        }
+        post(task);
+    }
+
+    /**
+     * Posts a task behind everything already queued, even if the caller is
+     * running on this mailbox
+     *
+     * @param task
+     */
+    public void post(Runnable task) {
+        queued.incrementAndGet();
+        tasks.add(task);
+        schedule();
+    }
+
+    /**
+     * @return tasks posted but not started yet
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return true if the caller is running on this mailbox
+     */
+    public boolean inMailbox() {
+        return runner == Thread.currentThread();
+    }
+
+    private void schedule() {
+        if (isScheduled.compareAndSet(false, true)) {
+            try {
+                WORKERS.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                isScheduled.set(false);
+                LoggerUtil.INSTANCE.warning(String.format("Room[%s] mailbox rejected work", name));
+            }
+        }
+    }
+
+    private void drain() {
+        runner = Thread.currentThread();
+        try {
+            Runnable task;
+            for (int i = 0; i < MAX_TASKS_PER_TURN && (task = tasks.poll()) != null; i++) {
+                queued.decrementAndGet();
+                runTask(task);
+            }
+        } finally {
+            runner = null;
+            isScheduled.set(false);
+        }
+        if (!tasks.isEmpty()) {
+            schedule(); // more work arrived (or we hit the per-turn limit)
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            // one bad task shouldn't kill the room
+            LoggerUtil.INSTANCE.severe(String.format("Room[%s] task failed", name), e);
+        }
+    }
+}
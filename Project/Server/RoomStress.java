@@ -0,0 +1,213 @@
+package Project.Server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+import Project.Common.LoggerUtil;
+import Project.Common.Payload;
+import Project.Common.PayloadType;
+
+/**
+ * Stress test for the Server's room registry and room transfers.
+ * Every simulated client gets its id from Server.nextClientId() on its own
+ * thread (like concurrent handshakes), then keeps hopping between a small set
+ * of rooms by sending ROOM_JOIN/ROOM_CREATE Payloads through ServerThread, the
+ * same path a real client's payloads take. Few clients per room means rooms
+ * constantly empty out, close and get created again while others are joining
+ * them.
+ * At the end it checks that ids were unique, every client is in exactly one
+ * open room and that room is the one it routes to, and no empty room was left
+ * open. Clients are in-memory connections, so there's no network.
+ * <p>
+ * Usage: java Project.Server.RoomStress [clients] [rooms] [seconds]
+ * </p>
+ */
+public class RoomStress {
+    private static final long JOIN_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private final LongAdder joins = new LongAdder();
+    private final LongAdder creates = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rooms = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        // before touching Server, the first config LoggerUtil gets is the one it keeps
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("stress.log");
+        config.setFileLogLevel(Level.WARNING);
+        config.setConsoleLogLevel(Level.WARNING);
+        config.setCaptureCallerClass(false);
+        LoggerUtil.INSTANCE.setConfig(config);
+        Server server = Server.INSTANCE;
+        server.createRoom(Room.LOBBY);
+
+        new RoomStress().run(server, clients, rooms, seconds);
+    }
+
+    private void run(Server server, int clientCount, int roomCount, int seconds) throws Exception {
+        List<String> failures = new ArrayList<>();
+
+        // concurrent handshakes
+        ServerThread[] clients = new ServerThread[clientCount];
+        List<Thread> threads = new ArrayList<>(clientCount);
+        for (int i = 0; i < clientCount; i++) {
+            final int index = i;
+            threads.add(Thread.ofVirtual().start(() -> {
+                ServerThread client = new ServerThread(new ServerBenchmarks.InMemoryConnection(), (s) -> {
+                });
+                client.onAttached(); // marks it running, no reader thread needed
+                client.setClientName("stress-" + index);
+                client.sendClientId(server.nextClientId());
+                server.joinRoom(Room.LOBBY, client);
+                clients[index] = client;
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        for (ServerThread client : clients) {
+            if (!ids.add(client.getClientId())) {
+                failures.add("duplicate client id " + client.getClientId());
+            }
+        }
+
+        // churn
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long start = System.nanoTime();
+        threads.clear();
+        for (ServerThread client : clients) {
+            threads.add(Thread.ofVirtual().start(() -> churn(server, client, roomCount, deadline)));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        awaitIdle(server); // let the mailboxes finish what's queued
+
+        // invariants
+        ConcurrentHashMap<Long, Room> membership = new ConcurrentHashMap<>();
+        for (Room room : server.getRooms()) {
+            if (!room.isRunning) {
+                failures.add("closed room still registered: " + room.getName());
+            }
+            if (room.getClients().isEmpty() && !Room.LOBBY.equalsIgnoreCase(room.getName())) {
+                failures.add("empty room left open: " + room.getName());
+            }
+            for (ServerThread client : room.getClients()) {
+                Room other = membership.put(client.getClientId(), room);
+                if (other != null) {
+                    failures.add(String.format("client %s is in %s and %s", client.getClientId(), other.getName(),
+                            room.getName()));
+                }
+            }
+        }
+        for (ServerThread client : clients) {
+            Room room = membership.get(client.getClientId());
+            if (room == null) {
+                failures.add(String.format("client %s isn't in any room", client.getClientId()));
+            } else if (room != client.getCurrentRoom()) {
+                failures.add(String.format("client %s is in %s but routes to %s", client.getClientId(),
+                        room.getName(), client.getCurrentRoom() == null ? null : client.getCurrentRoom().getName()));
+            }
+        }
+
+        System.out.println(String.format("%s clients, %s room names, %.1fs", clientCount, roomCount, elapsed));
+        System.out.println(String.format("%-10s %10s %10.0f/s", "joins", joins.sum(), joins.sum() / elapsed));
+        System.out.println(String.format("%-10s %10s %10.0f/s", "creates", creates.sum(), creates.sum() / elapsed));
+        System.out.println(String.format("%-10s %10s", "retries", retries.sum()));
+        System.out.println(String.format("%-10s %10s", "open rooms", server.getRooms().size()));
+        if (failures.isEmpty()) {
+            System.out.println("OK");
+            System.exit(0);
+        }
+        failures.stream().limit(20).forEach(failure -> System.out.println("FAIL: " + failure));
+        System.out.println(failures.size() + " failures");
+        System.exit(1);
+    }
+
+    /**
+     * Hops between random rooms until the deadline, one move at a time like a
+     * real client: join the room if it exists, otherwise create it. Losing a
+     * race (the room closed, or someone else created it first) counts as a
+     * retry, it's expected under this much churn.
+     */
+    private void churn(Server server, ServerThread client, int roomCount, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            String name = "stress-room-" + random.nextInt(roomCount);
+            boolean exists = exists(server, name);
+            client.processPayload(payload(exists ? PayloadType.ROOM_JOIN : PayloadType.ROOM_CREATE, name));
+            if (!awaitRoom(client, name)) {
+                retries.increment();
+            } else if (exists) {
+                joins.increment();
+            } else {
+                creates.increment();
+            }
+        }
+    }
+
+    /**
+     * Waits (up to IDLE_TIMEOUT) until no room has tasks queued, checked twice
+     * in a row since a running task can still post to another room
+     */
+    private static void awaitIdle(Server server) throws InterruptedException {
+        long giveUp = System.nanoTime() + IDLE_TIMEOUT;
+        int idleChecks = 0;
+        while (idleChecks < 2 && System.nanoTime() < giveUp) {
+            Thread.sleep(100);
+            boolean idle = true;
+            for (Room room : server.getRooms()) {
+                if (room.getQueuedTasks() > 0) {
+                    idle = false;
+                    break;
+                }
+            }
+            idleChecks = idle ? idleChecks + 1 : 0;
+        }
+    }
+
+    private static boolean exists(Server server, String name) {
+        for (Room room : server.getRooms()) {
+            if (room.getName().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true once the client is a member of the named room and routes
+     *         to it, false if that doesn't happen within JOIN_TIMEOUT
+     */
+    private static boolean awaitRoom(ServerThread client, String name) {
+        long giveUp = System.nanoTime() + JOIN_TIMEOUT;
+        while (System.nanoTime() < giveUp) {
+            Room room = client.getCurrentRoom();
+            if (room != null && room.getName().equalsIgnoreCase(name) && room.getClients().contains(client)) {
+                return true;
+            }
+            LockSupport.parkNanos(20_000);
+        }
+        return false;
+    }
+
+    private static Payload payload(PayloadType type, String room) {
+        Payload p = new Payload();
+        p.setPayloadType(type);
+        p.setMessage(room);
+        return p;
+    }
+}
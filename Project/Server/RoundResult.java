@@ -0,0 +1,151 @@
+package Project.Server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of one rock-paper-scissors round for any number of players.
+ * Instead of battling every pair of players, picks are counted: when exactly
+ * two of r/p/s were picked, everyone with the winning pick beats everyone with
+ * the losing one; one kind or all three is a tie and nobody is eliminated.
+ * Resolving a round is a single pass over the players.
+ */
+public class RoundResult {
+    private static final String[] PICKS = { "r", "p", "s" };
+    private static final String[] PICK_NAMES = { "rock", "paper", "scissors" };
+
+    private final int[] counts; // players per pick, indexed like PICKS
+    private final int winningPick; // index into PICKS, -1 on a tie
+    private final List<ServerPlayer> winners;
+    private final List<ServerPlayer> eliminated;
+    private final List<ServerPlayer> players; // everyone who played the round
+
+    private RoundResult(int[] counts, int winningPick, List<ServerPlayer> winners, List<ServerPlayer> eliminated,
+            List<ServerPlayer> players) {
+        this.counts = counts;
+        this.players = players;
+        this.winningPick = winningPick;
+        this.winners = winners;
+        this.eliminated = eliminated;
+    }
+
+    /**
+     * Buckets the picks of everyone still playing (ready and not eliminated) and
+     * works out the winners and who gets eliminated. Doesn't change the players.
+     *
+     * @param players everyone in the room
+     * @return the round's outcome
+     */
+    public static RoundResult resolve(Collection<ServerPlayer> players) {
+        int[] counts = new int[PICKS.length];
+        List<List<ServerPlayer>> buckets = new ArrayList<>(PICKS.length);
+        List<ServerPlayer> played = new ArrayList<>();
+        for (int i = 0; i < PICKS.length; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (ServerPlayer player : players) {
+            if (!player.isReady() || player.isEliminated()) {
+                continue;
+            }
+            int pick = indexOf(player.getPick());
+            if (pick >= 0) {
+                counts[pick]++;
+                buckets.get(pick).add(player);
+                played.add(player);
+            }
+        }
+        for (int pick = 0; pick < PICKS.length; pick++) {
+            int beaten = beats(pick);
+            int beater = beats(beaten); // the pick that beats this one
+            // exactly two kinds picked, and this one beats the other
+            if (counts[pick] > 0 && counts[beaten] > 0 && counts[beater] == 0) {
+                return new RoundResult(counts, pick, buckets.get(pick), buckets.get(beaten), played);
+            }
+        }
+        return new RoundResult(counts, -1, Collections.emptyList(), Collections.emptyList(), played);
+    }
+
+    /**
+     * @return index into PICKS, -1 if it isn't r, p or s
+     */
+    private static int indexOf(String pick) {
+        if (pick == null) {
+            return -1;
+        }
+        switch (pick.trim().toLowerCase()) {
+            case "r":
+                return 0;
+            case "p":
+                return 1;
+            case "s":
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return the pick that pick beats (rock beats scissors, paper beats rock,
+     *         scissors beats paper)
+     */
+    private static int beats(int pick) {
+        return (pick + 2) % PICKS.length;
+    }
+
+    public boolean isTie() {
+        return winningPick < 0;
+    }
+
+    /**
+     * @return "r", "p" or "s", null on a tie
+     */
+    public String getWinningPick() {
+        return isTie() ? null : PICKS[winningPick];
+    }
+
+    /**
+     * @param pick "r", "p" or "s"
+     * @return how many players made that pick
+     */
+    public int getCount(String pick) {
+        int index = indexOf(pick);
+        return index < 0 ? 0 : counts[index];
+    }
+
+    /**
+     * @return players who made the winning pick (empty on a tie)
+     */
+    public List<ServerPlayer> getWinners() {
+        return winners;
+    }
+
+    /**
+     * @return players who made the losing pick (empty on a tie)
+     */
+    public List<ServerPlayer> getEliminated() {
+        return eliminated;
+    }
+
+    /**
+     * @return players who made a valid pick this round, in room order
+     */
+    public List<ServerPlayer> getPlayers() {
+        return players;
+    }
+
+    /**
+     * @return one line summary for the room
+     */
+    @Override
+    public String toString() {
+        String picks = String.format("rock %s, paper %s, scissors %s", counts[0], counts[1], counts[2]);
+        if (isTie()) {
+            return "Round tied (" + picks + "), nobody is eliminated";
+        }
+        int losingPick = beats(winningPick);
+        return String.format("%s beats %s (%s): %s won the round, %s eliminated", PICK_NAMES[winningPick],
+                PICK_NAMES[losingPick], picks, winners.size(), eliminated.size());
+    }
+}
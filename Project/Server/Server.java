@@ -2,13 +2,23 @@
 package Project.Server;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.List;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import Project.Common.AsyncLogAppender;
 import Project.Common.LoggerUtil;
+import Project.Common.ResumePayload;
 
 public enum Server {
     INSTANCE;
@@ -19,39 +29,53 @@ public enum Server {
         config.setFileSizeLimit(2048 * 1024); // 2MB
         config.setFileCount(1);
         config.setLogLocation("server.log");
+        config.setCaptureCallerClass(false); // Room[]/ServerThread[] prefixes already say who logged
+        // write logs on a background thread, under a flood keep a sample instead of stalling broadcasts
+        config.setAsyncBufferSize(8192);
+        config.setAsyncOverflowPolicy(AsyncLogAppender.OverflowPolicy.SAMPLE);
         // Set the logger configuration
         LoggerUtil.INSTANCE.setConfig(config);
     }
     private int port = 3000;
-    // Use ConcurrentHashMap for thread-safe room management
+    private TransportMode transportMode = TransportMode.BLOCKING;
+    private final ServerConfig config = ServerConfig.load();
+    // only used by TransportMode.NIO; each loop multiplexes many connections
+    private NioEventLoop[] eventLoops = new NioEventLoop[0];
+    private MetricsEndpoint metricsEndpoint = null; // see ServerConfig.metricsPort
+    private final AdmissionControl admission = new AdmissionControl(config);
+    private final ConnectionReaper reaper = new ConnectionReaper(config); // heartbeat and read idle timeout
+    private final SessionRegistry sessions = new SessionRegistry(config); // resume tokens and dropped clients kept for them
+    private int acceptorThreads = 1; // see runAcceptors()
+    // lowercase name -> Room; only changed through computeIfAbsent() and remove(key, room) so
+    // concurrent creates/removes of the same name can't overwrite each other
     private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
     private boolean isRunning = true;
-    private long nextClientId = 1;
+    // handshakes finish on many reader threads at once
+    private final AtomicLong nextClientId = new AtomicLong(1);
+    // searchable names of the rooms, updated inside the rooms map's atomic steps by createRoom()/removeRoom()
+    private final RoomIndex roomIndex = new RoomIndex();
 
     private Server() {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             LoggerUtil.INSTANCE.info("JVM is shutting down. Perform cleanup tasks.");
             shutdown();
+            LoggerUtil.INSTANCE.shutdown(); // last, writes out everything still in the async log buffer
         }));
     }
 
-    private void start(int port) {
+    private void start(int port, TransportMode transportMode) {
         this.port = port;
+        this.transportMode = transportMode;
         // server listening
-        LoggerUtil.INSTANCE.info("Listening on port " + this.port);
-        // Simplified client connection loop
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
-            createRoom(Room.LOBBY);// create the first room
-            while (isRunning) {
-                LoggerUtil.INSTANCE.info("Waiting for next client");
-                Socket incomingClient = serverSocket.accept(); // blocking action, waits for a client connection
-                LoggerUtil.INSTANCE.info("Client connected");
-                // wrap socket in a ServerThread, pass a callback to notify the Server they're
-                // initialized
-                ServerThread sClient = new ServerThread(incomingClient, this::onClientInitialized);
-                // start the thread (typically an external entity manages the lifecycle and we
-                // don't have the thread start itself)
-                sClient.start();
+        LoggerUtil.INSTANCE.info(String.format("Listening on port %s (%s transport)", this.port, transportMode));
+        createRoom(Room.LOBBY);// create the first room
+        startMetrics();
+        reaper.start();
+        try {
+            if (transportMode == TransportMode.NIO) {
+                startNio();
+            } else {
+                startBlocking(readerThreadFactory(transportMode));
             }
         } catch (IOException e) {
             LoggerUtil.INSTANCE.severe("Error accepting connection", e);
@@ -61,21 +85,205 @@ public enum Server {
         }
     }
 
+    /**
+     * Starts the /metrics endpoint unless it's disabled; a port that's in use
+     * only costs the metrics, not the Server
+     */
+    private void startMetrics() {
+        if (config.getMetricsPort() <= 0) {
+            return;
+        }
+        try {
+            metricsEndpoint = new MetricsEndpoint(config.getMetricsPort(), this::getRooms);
+            metricsEndpoint.start();
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.warning("Could not start metrics on port " + config.getMetricsPort(), e);
+        }
+    }
+
+    /**
+     * Creates the threads that run each ServerThread's blocking read loop
+     * 
+     * @param transportMode BLOCKING for platform threads, VIRTUAL for virtual
+     *                      threads
+     * @return the factory passed to ServerThread.start()
+     */
+    protected static ThreadFactory readerThreadFactory(TransportMode transportMode) {
+        if (transportMode == TransportMode.VIRTUAL) {
+            return Thread.ofVirtual().name("ServerThread-v", 0).factory();
+        }
+        return Thread.ofPlatform().name("ServerThread-", 0).factory();
+    }
+
+    /**
+     * Thread-per-client accept loop; a reader thread only starts once the
+     * connection is admitted
+     * 
+     * @param threadFactory platform or virtual reader threads
+     */
+    private void startBlocking(ThreadFactory threadFactory) throws IOException {
+        runAcceptors(() -> {
+            try (ServerSocket serverSocket = new ServerSocket()) {
+                if (acceptorThreads > 1) {
+                    serverSocket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                }
+                serverSocket.bind(new InetSocketAddress(port), config.getAcceptBacklog());
+                while (isRunning) {
+                    Socket incomingClient = serverSocket.accept(); // blocking action, waits for a client connection
+                    if (!admission.tryAdmit()) {
+                        admission.reject(incomingClient);
+                        continue;
+                    }
+                    LoggerUtil.INSTANCE.fine("Client connected");
+                    // wrap socket in a ServerThread, pass a callback to notify the Server they're
+                    // initialized
+                    ServerThread sClient;
+                    try {
+                        sClient = new ServerThread(new BlockingConnection(incomingClient, config.newOutboundQueue()),
+                                config.newInboundLimiter(), this::onClientInitialized);
+                    } catch (IOException e) {
+                        admission.release();
+                        LoggerUtil.INSTANCE.fine("Connection closed before it started");
+                        continue;
+                    }
+                    track(sClient);
+                    // start the thread (typically an external entity manages the lifecycle and we
+                    // don't have the thread start itself)
+                    sClient.start(threadFactory);
+                    admission.watchHandshake(sClient);
+                }
+            }
+        });
+    }
+
+    /**
+     * Selector based accept loop; accepted channels are spread round-robin across
+     * a fixed pool of event loops instead of getting their own thread
+     */
+    private void startNio() throws IOException {
+        int loopCount = Math.max(1, Runtime.getRuntime().availableProcessors());
+        eventLoops = new NioEventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            eventLoops[i] = new NioEventLoop("NioEventLoop-" + i);
+            eventLoops[i].start();
+        }
+        AtomicInteger next = new AtomicInteger(); // shared by the acceptors
+        runAcceptors(() -> {
+            try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+                if (acceptorThreads > 1) {
+                    serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                }
+                serverChannel.bind(new InetSocketAddress(port), config.getAcceptBacklog());
+                while (isRunning) {
+                    SocketChannel incomingClient = serverChannel.accept(); // blocking accept, reads are non-blocking
+                    if (!admission.tryAdmit()) {
+                        admission.reject(incomingClient);
+                        continue;
+                    }
+                    LoggerUtil.INSTANCE.fine("Client connected");
+                    NioEventLoop loop = eventLoops[Math.floorMod(next.getAndIncrement(), eventLoops.length)];
+                    NioConnection connection;
+                    try {
+                        connection = new NioConnection(incomingClient, loop, config.newOutboundQueue());
+                    } catch (IOException e) {
+                        admission.release();
+                        LoggerUtil.INSTANCE.fine("Connection closed before it started");
+                        continue;
+                    }
+                    ServerThread sClient = new ServerThread(connection, config.newInboundLimiter(),
+                            this::onClientInitialized);
+                    track(sClient);
+                    connection.bind(sClient);
+                    admission.watchHandshake(sClient);
+                }
+            }
+        });
+    }
+
+    /**
+     * Hands an admitted client to the reaper; its admission slot and reaper
+     * entry are given back when it closes
+     * 
+     * @param sClient
+     */
+    private void track(ServerThread sClient) {
+        sClient.setOnClosed(() -> {
+            admission.release();
+            reaper.remove(sClient);
+        });
+        reaper.add(sClient);
+    }
+
+    /**
+     * One accept loop on its own listening socket
+     */
+    private interface Acceptor {
+        void run() throws IOException;
+    }
+
+    /**
+     * Runs ServerConfig.acceptorThreads copies of the accept loop, the calling
+     * thread being one of them. Each binds its own socket to the port with
+     * SO_REUSEPORT so the OS spreads new connections across them; without
+     * SO_REUSEPORT support there's a single acceptor.
+     * 
+     * @param acceptor the accept loop
+     */
+    private void runAcceptors(Acceptor acceptor) throws IOException {
+        acceptorThreads = Math.max(1, config.getAcceptorThreads());
+        if (acceptorThreads > 1 && !supportsReusePort()) {
+            LoggerUtil.INSTANCE.warning("SO_REUSEPORT isn't supported here, using a single acceptor");
+            acceptorThreads = 1;
+        }
+        for (int i = 1; i < acceptorThreads; i++) {
+            Thread.ofPlatform().name("Acceptor-" + i).daemon(true).start(() -> {
+                try {
+                    acceptor.run();
+                } catch (IOException e) {
+                    LoggerUtil.INSTANCE.severe("Error accepting connection", e);
+                }
+            });
+        }
+        acceptor.run();
+    }
+
+    private static boolean supportsReusePort() {
+        try (ServerSocketChannel probe = ServerSocketChannel.open()) {
+            return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     /**
      * Gracefully disconnect clients
      */
     private void shutdown() {
+        reaper.stop();
         try {
             // chose removeIf over forEach to avoid potential
             // ConcurrentModificationException
             // since empty rooms tell the server to remove themselves
+            CountDownLatch disconnected = new CountDownLatch(rooms.size());
             rooms.values().removeIf(room -> {
-                room.disconnectAll();
+                room.execute(() -> {
+                    room.disconnectAll();
+                    disconnected.countDown();
+                });
                 return true;
             });
+            // rooms run on their mailboxes, give them a moment to notify their clients
+            disconnected.await(2, TimeUnit.SECONDS);
         } catch (Exception e) {
             LoggerUtil.INSTANCE.info("Error cleaning up rooms", e);
         }
+        for (NioEventLoop loop : eventLoops) {
+            loop.shutdown();
+        }
+        if (metricsEndpoint != null) {
+            metricsEndpoint.stop();
+        }
+        LoggerUtil.INSTANCE.info("Outbound " + FlushMetrics.INSTANCE);
     }
 
     /**
@@ -85,11 +293,20 @@ public enum Server {
      * @param sClient
      */
     private void onClientInitialized(ServerThread sClient) {
-        sClient.sendClientId(nextClientId);
-        nextClientId++;
-        if (nextClientId < 0) {
-            nextClientId = 1;
+        ResumePayload request = sClient.getResumeRequest();
+        if (request != null && resumeSession(sClient, request)) {
+            return;
         }
+        startSession(sClient);
+    }
+
+    /**
+     * Gives the client a new id (and resume token) and puts it in the lobby
+     * 
+     * @param sClient
+     */
+    private void startSession(ServerThread sClient) {
+        sClient.sendClientId(nextClientId(), sessions.open(sClient), sessions.newReplayLog());
         // add to lobby room
         LoggerUtil.INSTANCE.info(String.format("Server: *%s[%s] initialized*",
                 sClient.getClientName(), sClient.getClientId()));
@@ -97,26 +314,81 @@ public enum Server {
     }
 
     /**
-     * Attempts to create a new Room and add it to the tracked rooms collection
+     * Hands the session of the request's token to this connection, in the Room
+     * it was kept in (see Room.resumeClient()). If the old connection is still
+     * open (the Server hadn't noticed it's gone) it's closed first; its
+     * detachClient() is then queued ahead of the resume. Falls back to a new
+     * session if the resume doesn't work out.
+     * 
+     * @param sClient the new connection
+     * @param request
+     * @return false if there's no session to resume
+     */
+    private boolean resumeSession(ServerThread sClient, ResumePayload request) {
+        ServerThread parked = sessions.find(request.getToken());
+        if (parked == null || parked == sClient) {
+            sessions.resumeFailed();
+            return false;
+        }
+        parked.disconnect();
+        Room room = parked.getLastRoom();
+        if (room == null) {
+            sessions.resumeFailed();
+            return false;
+        }
+        room.post(() -> {
+            if (!room.resumeClient(parked, sClient, request.getReceived())) {
+                sessions.resumeFailed();
+                startSession(sClient);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return resume tokens and clients kept for resuming
+     */
+    SessionRegistry getSessions() {
+        return sessions;
+    }
+
+    /**
+     * @return a unique client id (wraps back to 1 after Long.MAX_VALUE)
+     */
+    protected long nextClientId() {
+        return nextClientId.getAndUpdate(id -> id == Long.MAX_VALUE ? 1 : id + 1);
+    }
+
+    /**
+     * Attempts to create a new Room and add it to the tracked rooms collection.
+     * The check and the insert are one atomic step, so when two clients create
+     * the same name at once exactly one of them gets true.
      * 
-     * @param name Unique name of the room
+     * @param name Unique name of the room, at most Room.MAX_NAME_LENGTH long
      * @return true if it was created and false if it wasn't
      */
     protected boolean createRoom(String name) {
-        final String nameCheck = name.toLowerCase();
-        if (rooms.containsKey(nameCheck)) {
+        if (name == null || name.isBlank() || name.length() > Room.MAX_NAME_LENGTH) {
             return false;
         }
-        Room room = null;
-        if (Room.LOBBY.equalsIgnoreCase(nameCheck)) {
-            room = new Room(name);
-        } else {
-            // uncomment this if doing chatroom
-            // room = new Room(name);
-            // comment this out if doing chatroom
-            room = new GameRoom(name); // <-- added during Ready Check lesson
+        final String nameCheck = name.toLowerCase();
+        Room[] created = new Room[1];
+        rooms.computeIfAbsent(nameCheck, key -> {
+            if (Room.LOBBY.equalsIgnoreCase(key)) {
+                created[0] = new Room(name);
+            } else {
+                // uncomment this if doing chatroom
+                // created[0] = new Room(name);
+                // comment this out if doing chatroom
+                created[0] = new GameRoom(name); // <-- added during Ready Check lesson
+            }
+            // indexed in the same atomic step so a quick removeRoom() can't run before it
+            roomIndex.add(name);
+            return created[0];
+        });
+        if (created[0] == null) {
+            return false;
         }
-        rooms.put(nameCheck, room);
         LoggerUtil.INSTANCE.info(String.format("Created new Room %s", name));
         return true;
     }
@@ -129,29 +401,94 @@ public enum Server {
      * @return true if the move was successful, false otherwise
      */
     protected boolean joinRoom(String name, ServerThread client) {
-        final String nameCheck = name.toLowerCase();
-        if (!rooms.containsKey(nameCheck)) {
+        Room next = rooms.get(name.toLowerCase());
+        if (next == null) {
             return false;
         }
+        transfer(client, next);
+        return true;
+    }
+
+    /**
+     * Moves a client without ever holding two rooms at once: the leave runs on
+     * the current room's mailbox and only then is the join posted to the next
+     * room's mailbox. The client sees "left" before "joined", and payloads it
+     * sends after the switch queue behind addClient() in the next room (ones
+     * still waiting in the old room get passed on by the ServerThread).
+     * Called from the current room's mailbox (handleJoinRoom()) the leave runs
+     * right away.
+     * If the next room closed before the join ran (it emptied and removed itself
+     * from rooms) the client goes to the lobby instead of being left in a closed
+     * room.
+     * 
+     * @param client
+     * @param next
+     */
+    private void transfer(ServerThread client, Room next) {
+        Runnable join = () -> next.execute(() -> {
+            if (!client.isRunning) {
+                // disconnected on the way; the detachClient() its cleanup() queued on the Room it
+                // was routed to last parks or closes its session
+                return;
+            }
+            if (next.isRunning) {
+                next.addClient(client);
+                return;
+            }
+            Room lobby = rooms.get(Room.LOBBY);
+            if (lobby != null && lobby != next) {
+                client.sendMessage(String.format("Room %s closed before you joined", next.getName()));
+                transfer(client, lobby);
+            }
+        });
         Room current = client.getCurrentRoom();
-        if (current != null) {
-            current.removedClient(client);
+        if (current == next) {
+            join.run();
+            return;
         }
-        Room next = rooms.get(nameCheck);
-        next.addClient(client);
-        return true;
+        if (current == null) {
+            client.routeTo(next, join);
+            return;
+        }
+        current.execute(() -> {
+            try {
+                current.removedClient(client);
+            } finally {
+                // route the client's next payloads to the new room; they queue behind addClient()
+                client.routeTo(next, join);
+            }
+        });
     }
 
-    protected List<String> listRooms(String roomQuery) {
-        final String nameCheck = roomQuery.toLowerCase();
-        return rooms.values().stream()
-                .filter(room -> room.getName().toLowerCase().contains(nameCheck))// find partially matched rooms
-                .map(room -> room.getName())// map room to String (name)
-                .collect(Collectors.toList()); // return a mutable list
+    /**
+     * Finds rooms whose name contains the query, one page at a time (see
+     * RoomIndex)
+     * 
+     * @param roomQuery part of the name, empty for all rooms
+     * @param after     cursor from the previous page, null for the first page
+     * @param limit     page size (capped)
+     * @return matching room names in name order
+     */
+    protected RoomIndex.Page listRooms(String roomQuery, String after, int limit) {
+        return roomIndex.search(roomQuery, after, limit);
+    }
+
+    /**
+     * @return live view of the current rooms
+     */
+    Collection<Room> getRooms() {
+        return rooms.values();
     }
 
     protected void removeRoom(Room room) {
-        rooms.remove(room.getName().toLowerCase());
+        // only if it's still this Room, a newer Room with the same name stays
+        rooms.computeIfPresent(room.getName().toLowerCase(), (key, existing) -> {
+            if (existing != room) {
+                return existing;
+            }
+            roomIndex.remove(room.getName());
+            return null;
+        });
         LoggerUtil.INSTANCE.info(String.format("Server removed room %s", room.getName()));
     }
 
@@ -159,13 +496,19 @@ public enum Server {
         LoggerUtil.INSTANCE.info("Server Starting");
         Server server = Server.INSTANCE;
         int port = 3000;
+        TransportMode transportMode = TransportMode.BLOCKING;
         try {
             port = Integer.parseInt(args[0]);
         } catch (Exception e) {
             // can ignore, will either be index out of bounds or type mismatch
             // will default to the defined value prior to the try/catch
         }
-        server.start(port);
+        try {
+            transportMode = TransportMode.valueOf(args[1].toUpperCase());
+        } catch (Exception e) {
+            // same as above, defaults to the blocking transport
+        }
+        server.start(port, transportMode);
         LoggerUtil.INSTANCE.info("Server Stopped");
     }
 }
@@ -0,0 +1,178 @@
+package Project.Server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+import Project.Common.Bench;
+import Project.Common.Frame;
+import Project.Common.LoggerUtil;
+
+/**
+ * Benchmarks for the server hot paths:
+ * Room.sendMessage fan-out by room size, room search (RoomIndex against a
+ * scan) and GameRoom.processBattles by player count (random r/p/s, and r/s
+ * only so every round has winners). Clients are in-memory connections
+ * (frames are copied into a buffer like a socket send buffer) so the numbers
+ * exclude the network.
+ * See Bench for the tuning properties.
+ * <p>
+ * Usage: java Project.Server.ServerBenchmarks
+ * </p>
+ */
+public class ServerBenchmarks {
+    private static final String[] PICKS = { "r", "p", "s" };
+    private static final String[] ROOM_WORDS = { "red", "blue", "green", "arena", "lobby", "tower", "fast",
+            "casual", "ranked", "pro" };
+
+    public static void main(String[] args) throws Exception {
+        LoggerUtil.LoggerConfig config = new LoggerUtil.LoggerConfig();
+        config.setLogLocation("benchmark.log");
+        config.setFileLogLevel(Level.WARNING);
+        config.setConsoleLogLevel(Level.WARNING);
+        config.setCaptureCallerClass(false);
+        LoggerUtil.INSTANCE.setConfig(config);
+
+        for (int roomSize : new int[] { 2, 10, 100, 1000 }) {
+            Room room = new Room("fanout-" + roomSize);
+            addClients(room, roomSize);
+            Bench.run("room.sendMessage.recipients_" + roomSize, () -> {
+                room.sendMessage(null, "benchmark message with a typical chat length");
+                return room;
+            });
+        }
+
+        benchmarkRoomSearch();
+
+        for (int players : new int[] { 2, 10, 50, 100, 1000 }) {
+            GameRoom gameRoom = new GameRoom("battles-" + players);
+            addClients(gameRoom, players);
+            // random r/p/s is nearly always a tie in larger rooms; only r/s always has winners and losers
+            benchmarkBattles("gameRoom.processBattles.players_" + players, gameRoom, PICKS);
+            benchmarkBattles("gameRoom.processBattles.twoPicks.players_" + players, gameRoom, new String[] { "r", "s" });
+        }
+    }
+
+    /**
+     * Room search over 50k rooms: the index (first page) against scanning every
+     * name for all matches like listRooms used to
+     */
+    private static void benchmarkRoomSearch() throws Exception {
+        int roomCount = 50_000;
+        RoomIndex index = new RoomIndex();
+        List<String> names = new ArrayList<>(roomCount);
+        Random random = new Random(roomCount);
+        for (int i = 0; i < roomCount; i++) {
+            String name = String.format("%s-%s-%s", ROOM_WORDS[random.nextInt(ROOM_WORDS.length)],
+                    ROOM_WORDS[random.nextInt(ROOM_WORDS.length)], i);
+            names.add(name);
+            index.add(name);
+        }
+        for (String query : new String[] { "", "arena", "42", "blue-tower-1234" }) {
+            String label = query.isEmpty() ? "all" : query;
+            Bench.run("rooms.scan." + label, () -> {
+                String nameCheck = query.toLowerCase();
+                return names.stream()
+                        .filter(name -> name.toLowerCase().contains(nameCheck))
+                        .collect(Collectors.toList());
+            });
+            // a room is created/removed between searches so the page cache can't answer
+            String churn = "churn-room";
+            Bench.run("roomIndex.search." + label, () -> {
+                if (index.size() > roomCount) {
+                    index.remove(churn);
+                } else {
+                    index.add(churn);
+                }
+            }, () -> index.search(query, null, RoomIndex.DEFAULT_PAGE_SIZE));
+            Bench.run("roomIndex.search.cached." + label,
+                    () -> index.search(query, null, RoomIndex.DEFAULT_PAGE_SIZE));
+        }
+    }
+
+    private static void benchmarkBattles(String name, GameRoom gameRoom, String[] picks) throws Exception {
+        Random random = new Random(gameRoom.playersInRoom.size());
+        Bench.run(name, () -> {
+            // a fresh round: everyone active with a random pick
+            gameRoom.playersInRoom.values().forEach(player -> {
+                player.setReady(true);
+                player.setEliminated(false);
+                player.setPick(picks[random.nextInt(picks.length)]);
+            });
+        }, () -> gameRoom.processBattles());
+    }
+
+    private static List<ServerThread> addClients(Room room, int count) {
+        List<ServerThread> clients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ServerThread client = new ServerThread(new InMemoryConnection(), (s) -> {
+            });
+            client.onAttached(); // marks it running, no reader thread needed
+            client.sendClientId(i + 1);
+            room.addClient(client);
+            clients.add(client);
+        }
+        return clients;
+    }
+
+    /**
+     * Connection that copies every frame into a reusable buffer instead of a
+     * socket
+     */
+    static class InMemoryConnection implements Connection {
+        private final ByteArrayOutputStream sent = new ByteArrayOutputStream(64 * 1024);
+
+        @Override
+        public void write(Frame frame) throws IOException {
+            if (sent.size() > 32 * 1024) {
+                sent.reset(); // the "client" read it
+            }
+            frame.writeTo(sent);
+        }
+
+        @Override
+        public void cork() {
+        }
+
+        @Override
+        public void uncork() {
+        }
+
+        @Override
+        public void setReadPaused(boolean paused) {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public long getBytesRead() {
+            return 0;
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return 0;
+        }
+
+        @Override
+        public long getFramesWritten() {
+            return 0;
+        }
+
+        @Override
+        public long getFramesDiscarded() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package Project.Server;
+
+import Project.Common.LoggerUtil;
+
+/**
+ * Tunable Server settings.
+ * Defaults can be overridden with system properties using the field name
+ * prefixed by "server." (e.g. -Dserver.outboundQueueCapacity=2048).
+ */
+public class ServerConfig {
+    private int outboundQueueCapacity = 1024; // frames buffered per client before the overflow policy applies
+    private OutboundQueue.OverflowPolicy overflowPolicy = OutboundQueue.OverflowPolicy.COALESCE_STATE;
+    private int metricsPort = 9400; // loopback port of the /metrics scrape endpoint, 0 or less disables it
+    // per connection inbound limits (see InboundLimiter), a rate of 0 or less means unlimited
+    private int chatRate = 10; // MESSAGE payloads per second
+    private int chatBurst = 20;
+    private int gameRate = 20; // READY/MOVE/PICK payloads per second
+    private int gameBurst = 40;
+    private int roomRate = 5; // ROOM_CREATE/JOIN/LIST payloads per second
+    private int roomBurst = 10;
+    private int inboundCredits = 64; // a client's payloads waiting on its Room before its socket stops being read
+    private int roomQueueLimit = 10000; // Room mailbox backlog at which senders stop being read
+    // admission (see AdmissionControl)
+    private int acceptBacklog = 1024; // pending connections the OS queues for accept()
+    private int maxConnections = 10000; // open connections at once, 0 or less for no limit
+    private int handshakeTimeoutMillis = 5000; // time to send CLIENT_CONNECT, 0 or less waits forever
+    private int acceptorThreads = 1; // more than 1 needs SO_REUSEPORT, each acceptor gets its own socket
+    // heartbeat (see ConnectionReaper), 0 or less disables either
+    private int pingIntervalMillis = 15000; // PING a client after this long without hearing from it
+    private int readIdleTimeoutMillis = 45000; // close a connection after this long without hearing from it
+    // resumable sessions (see SessionRegistry)
+    private int resumeGraceMillis = 30000; // a dropped client keeps its place this long, 0 or less disables resuming
+    private int replayFrames = 256; // most recent frames per session a reconnecting client can catch up on
+
+    /**
+     * Creates a config from the defaults and any "server.*" system properties
+     *
+     * @return the loaded config
+     */
+    public static ServerConfig load() {
+        ServerConfig config = new ServerConfig();
+        config.setOutboundQueueCapacity(
+                intProperty("server.outboundQueueCapacity", config.getOutboundQueueCapacity()));
+        config.setMetricsPort(intProperty("server.metricsPort", config.getMetricsPort()));
+        config.setChatRate(intProperty("server.chatRate", config.getChatRate()));
+        config.setChatBurst(intProperty("server.chatBurst", config.getChatBurst()));
+        config.setGameRate(intProperty("server.gameRate", config.getGameRate()));
+        config.setGameBurst(intProperty("server.gameBurst", config.getGameBurst()));
+        config.setRoomRate(intProperty("server.roomRate", config.getRoomRate()));
+        config.setRoomBurst(intProperty("server.roomBurst", config.getRoomBurst()));
+        config.setInboundCredits(intProperty("server.inboundCredits", config.getInboundCredits()));
+        config.setRoomQueueLimit(intProperty("server.roomQueueLimit", config.getRoomQueueLimit()));
+        config.setAcceptBacklog(intProperty("server.acceptBacklog", config.getAcceptBacklog()));
+        config.setMaxConnections(intProperty("server.maxConnections", config.getMaxConnections()));
+        config.setHandshakeTimeoutMillis(
+                intProperty("server.handshakeTimeoutMillis", config.getHandshakeTimeoutMillis()));
+        config.setAcceptorThreads(intProperty("server.acceptorThreads", config.getAcceptorThreads()));
+        config.setPingIntervalMillis(intProperty("server.pingIntervalMillis", config.getPingIntervalMillis()));
+        config.setReadIdleTimeoutMillis(
+                intProperty("server.readIdleTimeoutMillis", config.getReadIdleTimeoutMillis()));
+        config.setResumeGraceMillis(intProperty("server.resumeGraceMillis", config.getResumeGraceMillis()));
+        config.setReplayFrames(intProperty("server.replayFrames", config.getReplayFrames()));
+        String policy = System.getProperty("server.overflowPolicy");
+        if (policy != null) {
+            try {
+                config.setOverflowPolicy(OutboundQueue.OverflowPolicy.valueOf(policy.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                LoggerUtil.INSTANCE.warning("Unknown server.overflowPolicy " + policy);
+            }
+        }
+        return config;
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LoggerUtil.INSTANCE.warning(String.format("Invalid %s %s, using %s", name, value, defaultValue));
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Creates the outbound queue for a new connection
+     *
+     * @return a queue using this config's capacity and policy
+     */
+    public OutboundQueue newOutboundQueue() {
+        return new OutboundQueue(outboundQueueCapacity, overflowPolicy);
+    }
+
+    /**
+     * Creates the inbound rate limits for a new connection
+     *
+     * @return a limiter using this config's rates and credits
+     */
+    public InboundLimiter newInboundLimiter() {
+        return new InboundLimiter(this);
+    }
+
+    /**
+     * Gets how many frames can be queued for a client.
+     *
+     * @return the outbound queue capacity
+     */
+    public int getOutboundQueueCapacity() {
+        return outboundQueueCapacity;
+    }
+
+    /**
+     * Sets how many frames can be queued for a client.
+     *
+     * @param outboundQueueCapacity the outbound queue capacity
+     */
+    public void setOutboundQueueCapacity(int outboundQueueCapacity) {
+        this.outboundQueueCapacity = outboundQueueCapacity;
+    }
+
+    /**
+     * Gets what happens when a client's outbound queue is full.
+     *
+     * @return the overflow policy
+     */
+    public OutboundQueue.OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets what happens when a client's outbound queue is full.
+     *
+     * @param overflowPolicy the overflow policy
+     */
+    public void setOverflowPolicy(OutboundQueue.OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Gets the loopback port serving /metrics.
+     *
+     * @return the port, 0 or less when disabled
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * Sets the loopback port serving /metrics.
+     *
+     * @param metricsPort the port, 0 or less disables the endpoint
+     */
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    /**
+     * Gets MESSAGE payloads a client can send per second.
+     *
+     * @return the rate, 0 or less for unlimited
+     */
+    public int getChatRate() {
+        return chatRate;
+    }
+
+    /**
+     * Sets MESSAGE payloads a client can send per second.
+     *
+     * @param chatRate the rate, 0 or less for unlimited
+     */
+    public void setChatRate(int chatRate) {
+        this.chatRate = chatRate;
+    }
+
+    /**
+     * Gets how many MESSAGE payloads a client can send at once before chatRate applies.
+     *
+     * @return the burst size
+     */
+    public int getChatBurst() {
+        return chatBurst;
+    }
+
+    /**
+     * Sets how many MESSAGE payloads a client can send at once before chatRate applies.
+     *
+     * @param chatBurst the burst size
+     */
+    public void setChatBurst(int chatBurst) {
+        this.chatBurst = chatBurst;
+    }
+
+    /**
+     * Gets game payloads (READY, MOVE, PICK, ...) a client can send per second.
+     *
+     * @return the rate, 0 or less for unlimited
+     */
+    public int getGameRate() {
+        return gameRate;
+    }
+
+    /**
+     * Sets game payloads (READY, MOVE, PICK, ...) a client can send per second.
+     *
+     * @param gameRate the rate, 0 or less for unlimited
+     */
+    public void setGameRate(int gameRate) {
+        this.gameRate = gameRate;
+    }
+
+    /**
+     * Gets how many game payloads a client can send at once before gameRate applies.
+     *
+     * @return the burst size
+     */
+    public int getGameBurst() {
+        return gameBurst;
+    }
+
+    /**
+     * Sets how many game payloads a client can send at once before gameRate applies.
+     *
+     * @param gameBurst the burst size
+     */
+    public void setGameBurst(int gameBurst) {
+        this.gameBurst = gameBurst;
+    }
+
+    /**
+     * Gets room payloads (create, join, list) a client can send per second.
+     *
+     * @return the rate, 0 or less for unlimited
+     */
+    public int getRoomRate() {
+        return roomRate;
+    }
+
+    /**
+     * Sets room payloads (create, join, list) a client can send per second.
+     *
+     * @param roomRate the rate, 0 or less for unlimited
+     */
+    public void setRoomRate(int roomRate) {
+        this.roomRate = roomRate;
+    }
+
+    /**
+     * Gets how many room payloads a client can send at once before roomRate applies.
+     *
+     * @return the burst size
+     */
+    public int getRoomBurst() {
+        return roomBurst;
+    }
+
+    /**
+     * Sets how many room payloads a client can send at once before roomRate applies.
+     *
+     * @param roomBurst the burst size
+     */
+    public void setRoomBurst(int roomBurst) {
+        this.roomBurst = roomBurst;
+    }
+
+    /**
+     * Gets how many of a client's payloads can wait on its Room before its socket stops being read.
+     *
+     * @return the credits, 0 or less for no limit
+     */
+    public int getInboundCredits() {
+        return inboundCredits;
+    }
+
+    /**
+     * Sets how many of a client's payloads can wait on its Room before its socket stops being read.
+     *
+     * @param inboundCredits the credits, 0 or less for no limit
+     */
+    public void setInboundCredits(int inboundCredits) {
+        this.inboundCredits = inboundCredits;
+    }
+
+    /**
+     * Gets the Room mailbox backlog at which clients sending to that Room stop being read.
+     *
+     * @return the limit, 0 or less for no limit
+     */
+    public int getRoomQueueLimit() {
+        return roomQueueLimit;
+    }
+
+    /**
+     * Sets the Room mailbox backlog at which clients sending to that Room stop being read.
+     *
+     * @param roomQueueLimit the limit, 0 or less for no limit
+     */
+    public void setRoomQueueLimit(int roomQueueLimit) {
+        this.roomQueueLimit = roomQueueLimit;
+    }
+
+    /**
+     * Gets how many pending connections the OS queues for accept().
+     *
+     * @return the backlog
+     */
+    public int getAcceptBacklog() {
+        return acceptBacklog;
+    }
+
+    /**
+     * Sets how many pending connections the OS queues for accept().
+     *
+     * @param acceptBacklog the backlog
+     */
+    public void setAcceptBacklog(int acceptBacklog) {
+        this.acceptBacklog = acceptBacklog;
+    }
+
+    /**
+     * Gets how many connections can be open at once.
+     *
+     * @return the limit, 0 or less for no limit
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets how many connections can be open at once.
+     *
+     * @param maxConnections the limit, 0 or less for no limit
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Gets how long a new connection has to send CLIENT_CONNECT.
+     *
+     * @return the timeout, 0 or less to wait forever
+     */
+    public int getHandshakeTimeoutMillis() {
+        return handshakeTimeoutMillis;
+    }
+
+    /**
+     * Sets how long a new connection has to send CLIENT_CONNECT.
+     *
+     * @param handshakeTimeoutMillis the timeout, 0 or less to wait forever
+     */
+    public void setHandshakeTimeoutMillis(int handshakeTimeoutMillis) {
+        this.handshakeTimeoutMillis = handshakeTimeoutMillis;
+    }
+
+    /**
+     * Gets how many threads accept connections (more than 1 needs SO_REUSEPORT).
+     *
+     * @return the thread count
+     */
+    public int getAcceptorThreads() {
+        return acceptorThreads;
+    }
+
+    /**
+     * Sets how many threads accept connections (more than 1 needs SO_REUSEPORT).
+     *
+     * @param acceptorThreads the thread count
+     */
+    public void setAcceptorThreads(int acceptorThreads) {
+        this.acceptorThreads = acceptorThreads;
+    }
+
+    /**
+     * Gets how long a client can be quiet before it gets a PING.
+     *
+     * @return the interval, 0 or less to never ping
+     */
+    public int getPingIntervalMillis() {
+        return pingIntervalMillis;
+    }
+
+    /**
+     * Sets how long a client can be quiet before it gets a PING.
+     *
+     * @param pingIntervalMillis the interval, 0 or less to never ping
+     */
+    public void setPingIntervalMillis(int pingIntervalMillis) {
+        this.pingIntervalMillis = pingIntervalMillis;
+    }
+
+    /**
+     * Gets how long a client can be quiet before its connection is closed.
+     *
+     * @return the timeout, 0 or less to never close idle connections
+     */
+    public int getReadIdleTimeoutMillis() {
+        return readIdleTimeoutMillis;
+    }
+
+    /**
+     * Sets how long a client can be quiet before its connection is closed.
+     *
+     * @param readIdleTimeoutMillis the timeout, 0 or less to never close idle connections
+     */
+    public void setReadIdleTimeoutMillis(int readIdleTimeoutMillis) {
+        this.readIdleTimeoutMillis = readIdleTimeoutMillis;
+    }
+
+    /**
+     * Gets how long a dropped client's session is kept for it to resume.
+     *
+     * @return the grace period, 0 or less if sessions can't be resumed
+     */
+    public int getResumeGraceMillis() {
+        return resumeGraceMillis;
+    }
+
+    /**
+     * Sets how long a dropped client's session is kept for it to resume.
+     *
+     * @param resumeGraceMillis the grace period, 0 or less so sessions can't be resumed
+     */
+    public void setResumeGraceMillis(int resumeGraceMillis) {
+        this.resumeGraceMillis = resumeGraceMillis;
+    }
+
+    /**
+     * Gets how many of a session's most recent frames are kept for replay.
+     *
+     * @return the frame count
+     */
+    public int getReplayFrames() {
+        return replayFrames;
+    }
+
+    /**
+     * Sets how many of a session's most recent frames are kept for replay; a
+     * client that missed more gets a new session.
+     *
+     * @param replayFrames the frame count (at least 1)
+     */
+    public void setReplayFrames(int replayFrames) {
+        this.replayFrames = Math.max(1, replayFrames);
+    }
+}
@@ -1,5 +1,6 @@
 package Project.Server;
 
+import Project.Common.Frame;
 import Project.Common.Phase;
 import Project.Common.Player;
 
@@ -29,9 +30,21 @@ public class ServerPlayer extends Player {
     public ServerThread getServerThread() {
         return client;
     }
+
+    /**
+     * Moves the player to the connection that resumed its session
+     * 
+     * @param client
+     */
+    protected void setServerThread(ServerThread client) {
+        this.client = client;
+    }
     
     // add any wrapper methods to call on the ServerThread
     // don't used the exposed full ServerThread object
+    public boolean sendFrame(Frame frame) {
+        return client.sendFrame(frame);
+    }
     public boolean sendMove(long clientId, int x, int y){
         return client.sendMove(clientId, x, y);
     }
@@ -61,7 +74,7 @@ public class ServerPlayer extends Player {
         return client.sendCurrentPhase(phase);
     }
 
-    public boolean sendPoints(long clientId,int points){
-      return client.sendPoints(clientId, points, points);
-    }  
+    public boolean sendPoints(long clientId, int changedPoints, int currentPoints){
+      return client.sendPoints(clientId, changedPoints, currentPoints);
+    }
 }
\ No newline at end of file
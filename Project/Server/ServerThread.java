@@ -1,21 +1,33 @@
 package Project.Server;
 
-import java.net.Socket;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.logging.Level;
 
 import Project.Common.PayloadType;
 import Project.Common.Phase;
 import Project.Common.PickPayload;
 import Project.Common.PointsPayload;
 import Project.Common.ReadyPayload;
+import Project.Common.ResumePayload;
 import Project.Common.RoomResultsPayload;
+import Project.Common.RoundResultPayload;
+import Project.Common.ScoreboardPayload;
 import Project.Common.XYPayload;
 import Project.Common.Payload;
 
 import Project.Common.ConnectionPayload;
+import Project.Common.Frame;
+import Project.Common.Histogram;
 import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
 
 /**
  * A server-side representation of a single client.
@@ -23,26 +35,84 @@ import Project.Common.LoggerUtil;
  */
 public class ServerThread extends BaseServerThread {
     public static final long DEFAULT_CLIENT_ID = -1;
+    // how long handling each PayloadType takes (index = ordinal); the counts double as per-type payload counts
+    private static final Histogram[] PROCESSING_TIME = new Histogram[PayloadType.values().length];
+    static {
+        for (PayloadType type : PayloadType.values()) {
+            PROCESSING_TIME[type.ordinal()] = Metrics.INSTANCE.histogram("server_payload_processing_seconds",
+                    "type=\"" + type + "\"", "Time spent handling received payloads by PayloadType");
+        }
+    }
+    // inbound flow control (see InboundLimiter)
+    private static final LongAdder[] THROTTLED = new LongAdder[InboundLimiter.RateClass.values().length];
+    static {
+        for (InboundLimiter.RateClass rateClass : InboundLimiter.RateClass.values()) {
+            THROTTLED[rateClass.ordinal()] = Metrics.INSTANCE.counter("server_inbound_throttled_total",
+                    "class=\"" + rateClass + "\"", "Payloads dropped for going over their rate limit");
+        }
+    }
+    private static final LongAdder THROTTLED_CONNECTIONS = Metrics.INSTANCE.counter(
+            "server_throttled_connections_total", "", "Connections that went over a rate limit at least once");
+    private static final LongAdder READ_PAUSES = Metrics.INSTANCE.counter("server_inbound_pauses_total", "",
+            "Times a connection stopped being read because its Room was behind");
+    private static final AtomicLong PAUSED_CONNECTIONS = new AtomicLong();
+    static {
+        Metrics.INSTANCE.gauge("server_inbound_paused_connections", "", "Connections currently not being read",
+                PAUSED_CONNECTIONS::get);
+    }
+    private static final long THROTTLE_NOTICE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final Frame PING = pingFrame(); // the same bytes for every heartbeat
+    private static final int MAX_CLIENT_NAME_LENGTH = 64;
     private Room currentRoom;
     private long clientId;
     private String clientName;
     private Consumer<ServerThread> onInitializationComplete; // callback to inform when this object is ready
     private String pick;
+    private final InboundLimiter limiter; // only used by the reader (thread or event loop)
+    private final Object flowLock = new Object(); // guards routing and inFlight/readPaused, the reader and room workers both update them
+    private long route = 0; // bumped by every routeTo(), tells payloads posted before a move apart
+    private int inFlight = 0; // payloads posted to a Room and not handled yet
+    private volatile boolean readPaused = false; // only changed under flowLock, read by the ConnectionReaper
+    private volatile long payloadsThrottled = 0; // only the reader updates it
+    private long lastThrottleNotice = 0;
+    private volatile long lastPingNanos = 0; // only the ConnectionReaper sends pings
+    private volatile Runnable onClosed; // e.g. gives back the admission slot, see setOnClosed()
+    private final AtomicBoolean closed = new AtomicBoolean(false); // cleanup() can run more than once
+    // resumable sessions (see SessionRegistry)
+    private String resumeToken; // null if resuming is disabled
+    private volatile ReplayLog replay; // Frames sent in this session, null if resuming is disabled
+    private ResumePayload resumeRequest; // set if the client asked to resume during its handshake
+    private volatile Room lastRoom; // the Room it was in when its connection ended
+    private volatile boolean sessionStarted = false; // CLIENT_ID was sent, see isSessionStarted()
 
     /**
-     * Wraps the Socket connection and takes a Server reference and a callback
+     * Wraps the client Connection and takes a callback; no inbound limits
      * 
-     * @param myClient
-     * @param server
+     * @param myClient the client's connection (blocking or NIO)
      * @param onInitializationComplete method to inform listener that this object is
      *                                 ready
      */
-    protected ServerThread(Socket myClient, Consumer<ServerThread> onInitializationComplete) {
-        Objects.requireNonNull(myClient, "Client socket cannot be null");
+    protected ServerThread(Connection myClient, Consumer<ServerThread> onInitializationComplete) {
+        this(myClient, new InboundLimiter(), onInitializationComplete);
+    }
+
+    /**
+     * Wraps the client Connection and takes a callback
+     * 
+     * @param myClient the client's connection (blocking or NIO)
+     * @param limiter  rate limits and credits for what the client sends
+     * @param onInitializationComplete method to inform listener that this object is
+     *                                 ready
+     */
+    protected ServerThread(Connection myClient, InboundLimiter limiter,
+            Consumer<ServerThread> onInitializationComplete) {
+        Objects.requireNonNull(myClient, "Client connection cannot be null");
+        Objects.requireNonNull(limiter, "limiter cannot be null");
         Objects.requireNonNull(onInitializationComplete, "callback cannot be null");
         info("ServerThread created");
         // get communication channels to single client
-        this.client = myClient;
+        this.connection = myClient;
+        this.limiter = limiter;
         this.clientId = ServerThread.DEFAULT_CLIENT_ID;// this is updated later by the server
         this.onInitializationComplete = onInitializationComplete;
 
@@ -75,6 +145,22 @@ public class ServerThread extends BaseServerThread {
         currentRoom = room;
     }
 
+    /**
+     * Routes the client's payloads to a new room. The task adding the client
+     * to that room is posted in the same step, so nothing the client sends
+     * from now on can be handled there before it
+     * 
+     * @param room the room being joined
+     * @param join posts the task that adds the client to room
+     */
+    protected void routeTo(Room room, Runnable join) {
+        synchronized (flowLock) {
+            setCurrentRoom(room);
+            route++;
+            join.run();
+        }
+    }
+
     public String setPick(String pick){
         return pick;
     }
@@ -90,12 +176,176 @@ public class ServerThread extends BaseServerThread {
 
     @Override
     protected void info(String message) {
-        LoggerUtil.INSTANCE.info(String.format("ServerThread[%s(%s)]: %s", getClientName(), getClientId(), message));
+        if (!LoggerUtil.INSTANCE.isLoggable(Level.INFO)) {
+            return;
+        }
+        LoggerUtil.INSTANCE.info("ServerThread[" + getClientName() + "(" + getClientId() + ")]: " + message);
+    }
+
+    /**
+     * @return true while the connection isn't being read on purpose (see
+     *         InboundLimiter)
+     */
+    public boolean isReadPaused() {
+        return readPaused;
+    }
+
+    /**
+     * @return System.nanoTime() of the last PING sent, 0 if none
+     */
+    public long getLastPingNanos() {
+        return lastPingNanos;
+    }
+
+    /**
+     * Sends a heartbeat the client answers with PONG
+     * 
+     * @param now System.nanoTime() to remember as the send time
+     * @return see {@link #sendFrame(Frame)}
+     */
+    public boolean sendPing(long now) {
+        lastPingNanos = now;
+        return sendFrame(PING);
+    }
+
+    private static Frame pingFrame() {
+        Payload p = new Payload();
+        p.setPayloadType(PayloadType.PING);
+        try {
+            return Frame.of(p);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode PING", e);
+        }
+    }
+
+    protected static Payload pongPayload() {
+        Payload p = new Payload();
+        p.setPayloadType(PayloadType.PONG);
+        return p;
+    }
+
+    /**
+     * @return payloads dropped for going over a rate limit
+     */
+    public long getPayloadsThrottled() {
+        return payloadsThrottled;
+    }
+
+    /**
+     * @return the token a new connection can resume this session with, null if
+     *         resuming is disabled
+     */
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    /**
+     * @return what the client sent to resume an old session, null for a new
+     *         session
+     */
+    protected ResumePayload getResumeRequest() {
+        return resumeRequest;
+    }
+
+    /**
+     * @return true once CLIENT_ID was sent; the ConnectionReaper doesn't ping
+     *         before that, so every Frame after CLIENT_ID is in the ReplayLog
+     */
+    public boolean isSessionStarted() {
+        return sessionStarted;
+    }
+
+    /**
+     * @return the Room this client was in when its connection ended (null
+     *         while connected)
+     */
+    protected Room getLastRoom() {
+        return lastRoom;
+    }
+
+    /**
+     * @return true if a new connection could catch up on this session: it has a
+     *         ReplayLog and the connection never discarded a Frame, so the
+     *         client got exactly the Frames the log has up to some point
+     */
+    protected boolean isResumable() {
+        return replay != null && connection.getFramesDiscarded() == 0;
+    }
+
+    /**
+     * @param received Frames the client says it got in this session
+     * @return the Frames it missed, null if they aren't all kept anymore
+     */
+    protected List<Frame> missedFrames(long received) {
+        ReplayLog log = replay;
+        return log == null ? null : log.since(received);
+    }
+
+    /**
+     * Takes over the session of a client whose connection dropped: its id,
+     * name, token and ReplayLog. Sends CLIENT_ID and then the missed Frames,
+     * which are already in the log so they aren't added again. Runs on the
+     * Room's mailbox after this client took the old one's place there.
+     * 
+     * @param parked the ServerThread of the dropped connection
+     * @param missed see missedFrames()
+     */
+    protected void resumeSession(ServerThread parked, List<Frame> missed) {
+        ReplayLog log = parked.replay;
+        clientId = parked.clientId;
+        clientName = parked.clientName;
+        resumeToken = parked.resumeToken;
+        Frame id;
+        try {
+            id = Frame.of(clientIdPayload(clientId, clientName, resumeToken));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode CLIENT_ID", e);
+        }
+        synchronized (log) {
+            parked.replay = null; // anything still sent to the old one isn't part of the session anymore
+            super.sendFrame(id);
+            for (Frame frame : missed) {
+                super.sendFrame(frame);
+            }
+            replay = log;
+        }
+        sessionStarted = true;
+    }
+
+    /**
+     * @param onClosed runs once when the connection ends, however it ends
+     */
+    protected void setOnClosed(Runnable onClosed) {
+        this.onClosed = onClosed;
     }
 
     @Override
     protected void cleanup() {
+        isRunning = false;
+        if (closed.compareAndSet(false, true)) {
+            Room room;
+            synchronized (flowLock) { // the Room routeTo() posted the last join to
+                room = currentRoom;
+            }
+            if (room != null) {
+                lastRoom = room;
+                // queued rather than run here: cleanup() can happen in the middle of a broadcast
+                room.post(() -> room.detachClient(this));
+            } else {
+                Server.INSTANCE.getSessions().close(this); // nowhere to be kept
+            }
+            Runnable closedCallback = onClosed;
+            if (closedCallback != null) {
+                closedCallback.run();
+            }
+        }
         currentRoom = null;
+        synchronized (flowLock) {
+            if (readPaused) {
+                readPaused = false;
+                PAUSED_CONNECTIONS.decrementAndGet();
+            }
+        }
         super.cleanup();
     }
 
@@ -108,12 +358,155 @@ public class ServerThread extends BaseServerThread {
     // handle received message from the Client
     @Override
     protected void processPayload(Payload payload) {
+        if (payload.getPayloadType() == PayloadType.CLIENT_CONNECT) {
+            long start = System.nanoTime();
+            try {
+                if (clientName != null) {
+                    // already has its session; another one would open a new token and ReplayLog every time
+                    info("Ignoring repeated CLIENT_CONNECT");
+                    return;
+                }
+                if (!(payload instanceof ConnectionPayload cp) || !isValidClientName(cp.getClientName())) {
+                    info("Invalid CLIENT_CONNECT, disconnecting");
+                    disconnect();
+                    return;
+                }
+                if (cp instanceof ResumePayload resume) {
+                    resumeRequest = resume;
+                }
+                setClientName(cp.getClientName());
+            } catch (Exception e) {
+                LoggerUtil.INSTANCE.severe("Could not process CLIENT_CONNECT, disconnecting", e);
+                disconnect();
+            } finally {
+                PROCESSING_TIME[PayloadType.CLIENT_CONNECT.ordinal()].recordSince(start);
+            }
+            return;
+        }
+        if (payload.getPayloadType() == PayloadType.PING) {
+            long start = System.nanoTime();
+            send(pongPayload());
+            PROCESSING_TIME[PayloadType.PING.ordinal()].recordSince(start);
+            return;
+        }
+        if (payload.getPayloadType() == PayloadType.PONG) {
+            // receiving it was the point (see ConnectionReaper), it's only counted
+            PROCESSING_TIME[PayloadType.PONG.ordinal()].record(0);
+            return;
+        }
+        if (!limiter.tryAcquire(payload.getPayloadType())) {
+            onThrottled(payload);
+            return;
+        }
+        synchronized (flowLock) {
+            Room room = currentRoom;
+            if (room == null) {
+                info("Not in a Room, ignoring " + payload.getPayloadType());
+                return;
+            }
+            inFlight++;
+            // room logic runs on the room's mailbox, never on this reader thread; posted under the lock
+            // so it can't get ahead of the task adding this client to the room (see routeTo())
+            long postedRoute = route;
+            room.execute(() -> handleInRoom(room, postedRoute, payload));
+            // out of credits, or the room is so far behind that nobody sending to it should be read
+            if (!readPaused && inFlight > 0
+                    && (inFlight >= limiter.getCredits() || room.getQueuedTasks() > limiter.getRoomQueueLimit())) {
+                readPaused = true;
+                connection.setReadPaused(true);
+                READ_PAUSES.increment();
+                PAUSED_CONNECTIONS.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @param name from a CLIENT_CONNECT
+     * @return true if it's not blank and at most MAX_CLIENT_NAME_LENGTH long
+     */
+    private static boolean isValidClientName(String name) {
+        return name != null && !name.isBlank() && name.length() <= MAX_CLIENT_NAME_LENGTH;
+    }
+
+    /**
+     * Handles a Payload on the mailbox it was posted to, unless the client
+     * moved rooms since then: it's passed on to the client's current room,
+     * behind the task adding the client there. That way everything that can
+     * move the client (joins, creates, being sent to the lobby) runs on one
+     * mailbox at a time and in order, even if the client comes back to a room
+     * that still has its older payloads queued.
+     * 
+     * @param room        the room the Payload was posted to
+     * @param postedRoute the client's route when it was posted
+     * @param payload
+     */
+    private void handleInRoom(Room room, long postedRoute, Payload payload) {
+        Room current;
+        long currentRoute;
+        synchronized (flowLock) {
+            current = currentRoom;
+            currentRoute = route;
+        }
+        if (current != null && postedRoute != currentRoute) {
+            current.post(() -> handleInRoom(current, currentRoute, payload));
+            return;
+        }
+        try {
+            processRoomPayload(room, payload);
+        } finally {
+            onRoomPayloadHandled(room);
+        }
+    }
+
+    /**
+     * Gives back the credit of a handled Payload and resumes reading once the
+     * client has credits again and the room caught up (or none of this
+     * client's payloads are left in it)
+     * 
+     * @param room where the Payload was handled
+     */
+    private void onRoomPayloadHandled(Room room) {
+        synchronized (flowLock) {
+            inFlight--;
+            if (readPaused && inFlight < limiter.getCredits()
+                    && (inFlight == 0 || room.getQueuedTasks() <= limiter.getRoomQueueLimit())) {
+                readPaused = false;
+                connection.setReadPaused(false);
+                markActive(); // the quiet time was ours, not the client's
+                PAUSED_CONNECTIONS.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drops a Payload that went over its rate limit; the client is told at most
+     * once per THROTTLE_NOTICE_INTERVAL
+     * 
+     * @param payload
+     */
+    private void onThrottled(Payload payload) {
+        if (payloadsThrottled++ == 0) {
+            THROTTLED_CONNECTIONS.increment();
+        }
+        THROTTLED[InboundLimiter.RateClass.of(payload.getPayloadType()).ordinal()].increment();
+        long now = System.nanoTime();
+        if (lastThrottleNotice == 0 || now - lastThrottleNotice >= THROTTLE_NOTICE_INTERVAL) {
+            lastThrottleNotice = now;
+            info("Throttled " + payload.getPayloadType());
+            sendMessage("You're sending too fast, some of your actions were ignored");
+        }
+    }
+
+    /**
+     * Handles a Payload that acts on a Room (runs on that Room's mailbox)
+     * 
+     * @param currentRoom the room the client was in when the Payload arrived
+     * @param payload
+     */
+    private void processRoomPayload(Room currentRoom, Payload payload) {
+        long start = System.nanoTime();
         try {
             switch (payload.getPayloadType()) {
-                case CLIENT_CONNECT:
-                    ConnectionPayload cp = (ConnectionPayload) payload;
-                    setClientName(cp.getClientName());
-                    break;
                 case MESSAGE:
                     currentRoom.sendMessage(this, payload.getMessage());
                     break;
@@ -124,7 +517,12 @@ public class ServerThread extends BaseServerThread {
                     currentRoom.handleJoinRoom(this, payload.getMessage());
                     break;
                 case ROOM_LIST:
-                    currentRoom.handleListRooms(this, payload.getMessage());
+                    if (payload instanceof RoomResultsPayload request) {
+                        currentRoom.handleListRooms(this, request.getMessage(), request.getCursor(),
+                                request.getLimit());
+                    } else {
+                        currentRoom.handleListRooms(this, payload.getMessage(), null, 0);
+                    }
                     break;
                 case DISCONNECT:
                     currentRoom.disconnect(this);
@@ -160,49 +558,77 @@ public class ServerThread extends BaseServerThread {
         } catch (Exception e) {
             LoggerUtil.INSTANCE.severe("Could not process Payload: " + payload, e);
 
+        } finally {
+            PROCESSING_TIME[payload.getPayloadType().ordinal()].recordSince(start);
         }
     }
 
     // send methods specific to non-chatroom projects
+    // Note: the *Payload() builders are shared with Room/GameRoom broadcasts so a
+    // broadcast builds and encodes the Payload once instead of once per recipient
     public boolean sendMove(long clientId, int x, int y){
+        return send(movePayload(clientId, x, y));
+    }
+
+    protected static Payload movePayload(long clientId, int x, int y){
         XYPayload p = new XYPayload(x, y);
         p.setPayloadType(PayloadType.MOVE);
         p.setClientId(clientId);
-        return send(p);
+        return p;
     }
 
     public boolean sendPick(long clientId, String pick){
+        return send(pickPayload(clientId, pick));
+    }
+
+    protected static Payload pickPayload(long clientId, String pick){
         PickPayload pickP = new PickPayload(pick);
         pickP.setPayloadType(PayloadType.PICK);
         pickP.setClientId(clientId);
-        return send(pickP);
+        return pickP;
     }
 
     public boolean sendTurnStatus(long clientId, boolean didTakeTurn){
+        return send(turnStatusPayload(clientId, didTakeTurn));
+    }
+
+    protected static Payload turnStatusPayload(long clientId, boolean didTakeTurn){
         ReadyPayload rp = new ReadyPayload();
         rp.setPayloadType(PayloadType.TURN);
         rp.setReady(didTakeTurn);
         rp.setClientId(clientId);
-        return send(rp);
+        return rp;
     }
 
     public boolean sendGridDimensions(int x, int y) {
+        return send(gridDimensionsPayload(x, y));
+    }
+
+    protected static Payload gridDimensionsPayload(int x, int y) {
         XYPayload p = new XYPayload(x, y);
         p.setPayloadType(PayloadType.GRID_DIMENSION);
-        return send(p);
+        return p;
     }
 
     public boolean sendCurrentPhase(Phase phase) {
+        return send(currentPhasePayload(phase));
+    }
+
+    protected static Payload currentPhasePayload(Phase phase) {
         Payload p = new Payload();
         p.setPayloadType(PayloadType.PHASE);
         p.setMessage(phase.name());
-        return send(p);
+        return p;
     }
 
     public boolean sendResetReady() {
+        return send(resetReadyPayload());
+    }
+
+    protected static Payload resetReadyPayload() {
         ReadyPayload rp = new ReadyPayload();
         rp.setPayloadType(PayloadType.RESET_READY);
-        return send(rp);
+        return rp;
     }
 
     public boolean sendReadyStatus(long clientId, boolean isReady) {
@@ -210,12 +636,50 @@ public class ServerThread extends BaseServerThread {
     }
 
     public boolean sendPoints(long clientId, int changedPoints, int currentPoints){
+        return send(pointsPayload(clientId, changedPoints, currentPoints));
+    }
+
+    /**
+     * @param points   clientId -> current points
+     * @param snapshot true if points has everyone in the room
+     * @return a SCOREBOARD Payload
+     */
+    protected static Payload scoreboardPayload(LinkedHashMap<Long, Integer> points, boolean snapshot) {
+        ScoreboardPayload sp = new ScoreboardPayload();
+        sp.setPoints(points);
+        sp.setSnapshot(snapshot);
+        return sp;
+    }
+
+    protected static Payload pointsPayload(long clientId, int changedPoints, int currentPoints){
         PointsPayload pp = new PointsPayload();
         pp.setPayloadType(PayloadType.POINTS);
         pp.setClientId(clientId);
         pp.setChangedPoints(changedPoints);
         pp.setCurrentPoints(currentPoints);
-        return send(pp);
+        return pp;
+    }
+
+    /**
+     * Builds the summary of a finished round; has to be called before the
+     * players' picks are cleared
+     *
+     * @param result
+     * @return a ROUND_RESULT Payload with every pick, the eliminated clientIds
+     *         and +1 for each winner
+     */
+    protected static Payload roundResultPayload(RoundResult result) {
+        RoundResultPayload rp = new RoundResultPayload();
+        for (ServerPlayer sp : result.getPlayers()) {
+            rp.getPicks().put(sp.getClientId(), sp.getPick());
+        }
+        for (ServerPlayer sp : result.getEliminated()) {
+            rp.getEliminated().add(sp.getClientId());
+        }
+        for (ServerPlayer sp : result.getWinners()) {
+            rp.getPointsChanged().put(sp.getClientId(), 1);
+        }
+        return rp;
     }
 
     /**
@@ -227,29 +691,48 @@ public class ServerThread extends BaseServerThread {
      * @return
      */
     public boolean sendReadyStatus(long clientId, boolean isReady, boolean quiet) {
+        return send(readyStatusPayload(clientId, isReady, quiet));
+    }
+
+    protected static Payload readyStatusPayload(long clientId, boolean isReady, boolean quiet) {
         ReadyPayload rp = new ReadyPayload();
         rp.setClientId(clientId);
         rp.setReady(isReady);
         if (quiet) {
             rp.setPayloadType(PayloadType.SYNC_READY);
         }
-        return send(rp);
+        return rp;
     }
     // send methods to pass data back to the Client
 
-    public boolean sendRooms(List<String> rooms) {
+    /**
+     * Sends one page of a ROOM_LIST response
+     * 
+     * @param rooms  room names on this page
+     * @param cursor where the next request continues, null if there's nothing
+     *               after this page
+     * @param last   true if this is the final page for this request
+     * @return
+     */
+    public boolean sendRooms(List<String> rooms, String cursor, boolean last) {
         RoomResultsPayload rrp = new RoomResultsPayload();
         rrp.setRooms(rooms);
+        rrp.setCursor(cursor);
+        rrp.setLast(last);
         return send(rrp);
     }
 
     public boolean sendClientSync(long clientId, String clientName) {
+        return send(clientSyncPayload(clientId, clientName));
+    }
+
+    protected static Payload clientSyncPayload(long clientId, String clientName) {
         ConnectionPayload cp = new ConnectionPayload();
         cp.setClientId(clientId);
         cp.setClientName(clientName);
         cp.setConnect(true);
         cp.setPayloadType(PayloadType.SYNC_CLIENT);
-        return send(cp);
+        return cp;
     }
 
     /**
@@ -270,11 +753,15 @@ public class ServerThread extends BaseServerThread {
      * @return @see {@link #send(Payload)}
      */
     public boolean sendMessage(long senderId, String message) {
+        return send(messagePayload(senderId, message));
+    }
+
+    protected static Payload messagePayload(long senderId, String message) {
         Payload p = new Payload();
         p.setClientId(senderId);
         p.setMessage(message);
         p.setPayloadType(PayloadType.MESSAGE);
-        return send(p);
+        return p;
     }
 
     /**
@@ -287,13 +774,17 @@ public class ServerThread extends BaseServerThread {
      * @return success of sending the payload
      */
     public boolean sendRoomAction(long clientId, String clientName, String room, boolean isJoin) {
+        return send(roomActionPayload(clientId, clientName, room, isJoin));
+    }
+
+    protected static Payload roomActionPayload(long clientId, String clientName, String room, boolean isJoin) {
         ConnectionPayload cp = new ConnectionPayload();
         cp.setPayloadType(PayloadType.ROOM_JOIN);
         cp.setConnect(isJoin); // <-- determine if join or leave
         cp.setMessage(room);
         cp.setClientId(clientId);
         cp.setClientName(clientName);
-        return send(cp);
+        return cp;
     }
 
     /**
@@ -304,12 +795,16 @@ public class ServerThread extends BaseServerThread {
      * @return success of sending the payload
      */
     public boolean sendDisconnect(long clientId, String clientName) {
+        return send(disconnectPayload(clientId, clientName));
+    }
+
+    protected static Payload disconnectPayload(long clientId, String clientName) {
         ConnectionPayload cp = new ConnectionPayload();
         cp.setPayloadType(PayloadType.DISCONNECT);
         cp.setConnect(false);
         cp.setClientId(clientId);
         cp.setClientName(clientName);
-        return send(cp);
+        return cp;
     }
 
     /**
@@ -319,13 +814,87 @@ public class ServerThread extends BaseServerThread {
      * @return success of sending the payload
      */
     public boolean sendClientId(long clientId) {
+        return sendClientId(clientId, null, null);
+    }
+
+    /**
+     * Sends (and sets) this client their id and starts its session; CLIENT_ID
+     * itself isn't part of the ReplayLog
+     * 
+     * @param clientId
+     * @param resumeToken sent along so the client can resume, null if resuming is
+     *                    disabled
+     * @param replay      log for everything sent after CLIENT_ID, null if
+     *                    resuming is disabled
+     * @return success of sending the payload
+     */
+    public boolean sendClientId(long clientId, String resumeToken, ReplayLog replay) {
         this.clientId = clientId;
-        ConnectionPayload cp = new ConnectionPayload();
+        this.resumeToken = resumeToken;
+        Payload cp = clientIdPayload(clientId, clientName, resumeToken);
+        boolean sent;
+        if (replay == null) {
+            sent = send(cp);
+        } else {
+            synchronized (replay) {
+                sent = send(cp);
+                this.replay = replay;
+            }
+        }
+        sessionStarted = true;
+        return sent;
+    }
+
+    /**
+     * @param resumeToken null if resuming is disabled; sent in a ResumePayload
+     *                    so it stays out of the Client's logs
+     */
+    protected static Payload clientIdPayload(long clientId, String clientName, String resumeToken) {
+        ConnectionPayload cp;
+        if (resumeToken == null) {
+            cp = new ConnectionPayload();
+        } else {
+            ResumePayload resume = new ResumePayload();
+            resume.setToken(resumeToken);
+            cp = resume;
+        }
         cp.setPayloadType(PayloadType.CLIENT_ID);
         cp.setConnect(true);
         cp.setClientId(clientId);
         cp.setClientName(clientName);
-        return send(cp);
+        return cp;
+    }
+
+    /**
+     * Adds the Frame to the session's ReplayLog (if there is one) and sends it,
+     * both under the log's lock so the log has the socket's order.
+     * While the client is kept for resuming (connection closed) the Frame is
+     * only logged.
+     */
+    @Override
+    protected boolean sendFrame(Frame frame) {
+        ReplayLog log = replay;
+        if (log == null) {
+            return super.sendFrame(frame);
+        }
+        synchronized (log) {
+            log.append(frame);
+            return super.sendFrame(frame);
+        }
+    }
+
+    @Override
+    protected boolean send(Payload payload) {
+        if (isRunning || replay == null) {
+            return super.send(payload);
+        }
+        // connection's gone but the session may be resumed, it still has to be logged
+        try {
+            return sendFrame(Frame.of(payload));
+        } catch (IOException e) {
+            LoggerUtil.INSTANCE.severe("Could not encode Payload: " + payload, e);
+            return true;
+        }
     }
 
     // end send methods
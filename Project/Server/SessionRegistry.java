@@ -0,0 +1,152 @@
+package Project.Server;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import Project.Common.LoggerUtil;
+import Project.Common.Metrics;
+
+/**
+ * Lets a Client whose connection dropped pick its session back up instead of
+ * starting over:
+ * - every session gets a random resume token, sent with CLIENT_ID
+ * - when the connection drops, the client stays in its Room (ServerPlayer
+ * state included) for the grace period and what the Room sends it keeps
+ * going into its ReplayLog
+ * - a new connection presenting the token takes the client's place in the
+ * Room and gets only the Frames it missed; nobody else sees it leave or join
+ * - after the grace period the client is removed like any disconnect
+ * Tokens map to the ServerThread currently holding the session. Grace period
+ * and replay size come from ServerConfig.
+ */
+public class SessionRegistry {
+    private static final ScheduledThreadPoolExecutor EXPIRY_TIMER = createTimer();
+    private static final LongAdder PARKED = Metrics.INSTANCE.counter("server_sessions_parked_total", "",
+            "Dropped connections whose session was kept for resuming");
+    private static final LongAdder RESUMED = Metrics.INSTANCE.counter("server_sessions_resumed_total", "",
+            "Sessions picked back up by a new connection");
+    private static final LongAdder EXPIRED = Metrics.INSTANCE.counter("server_sessions_expired_total", "",
+            "Kept sessions nobody came back for within the grace period");
+    private static final LongAdder RESUME_FAILURES = Metrics.INSTANCE.counter("server_resume_failures_total", "",
+            "Resume attempts that got a new session instead");
+    private static final LongAdder REPLAYED = Metrics.INSTANCE.counter("server_resume_replayed_frames_total", "",
+            "Frames replayed to resumed sessions");
+
+    private final ConcurrentHashMap<String, ServerThread> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final long graceMillis;
+    private final int replayFrames;
+
+    /**
+     * @param config grace period and replay size
+     */
+    public SessionRegistry(ServerConfig config) {
+        this.graceMillis = config.getResumeGraceMillis();
+        this.replayFrames = config.getReplayFrames();
+        Metrics.INSTANCE.gauge("server_sessions", "", "Sessions that can be resumed (connected or kept)",
+                sessions::size);
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().name("SessionExpiry").daemon(true).factory());
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * @return true unless resuming is disabled (grace period of 0 or less)
+     */
+    public boolean isEnabled() {
+        return graceMillis > 0;
+    }
+
+    /**
+     * Registers a new session for the client
+     *
+     * @param client a client that just finished its handshake
+     * @return the client's resume token, null if resuming is disabled
+     */
+    public String open(ServerThread client) {
+        if (!isEnabled()) {
+            return null;
+        }
+        byte[] bytes = new byte[18];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, client);
+        return token;
+    }
+
+    /**
+     * @return a log for a new session's Frames, null if resuming is disabled
+     */
+    public ReplayLog newReplayLog() {
+        return isEnabled() ? new ReplayLog(replayFrames) : null;
+    }
+
+    /**
+     * @param token from a ResumePayload
+     * @return the ServerThread holding that session, null if there's no such
+     *         session (anymore)
+     */
+    public ServerThread find(String token) {
+        return token == null ? null : sessions.get(token);
+    }
+
+    /**
+     * Forgets the client's session, unless another connection holds it by now
+     *
+     * @param client
+     */
+    public void close(ServerThread client) {
+        String token = client.getResumeToken();
+        if (token != null) {
+            sessions.remove(token, client);
+        }
+    }
+
+    /**
+     * Hands the session to the connection that resumed it
+     *
+     * @param parked  the ServerThread whose connection dropped
+     * @param resumed the new connection's ServerThread
+     * @param missed  Frames it was sent
+     */
+    public void resumed(ServerThread parked, ServerThread resumed, int missed) {
+        sessions.replace(parked.getResumeToken(), parked, resumed);
+        RESUMED.increment();
+        REPLAYED.add(missed);
+    }
+
+    public void resumeFailed() {
+        RESUME_FAILURES.increment();
+    }
+
+    /**
+     * Keeps a dropped client in its Room for the grace period (runs on the
+     * Room's mailbox); if nobody resumed it by then it's removed
+     *
+     * @param client whose connection dropped
+     * @param room   the Room it's in
+     * @return false if the session can't be resumed and the client should be
+     *         removed now
+     */
+    public boolean park(ServerThread client, Room room) {
+        if (!isEnabled() || !client.isResumable() || find(client.getResumeToken()) != client) {
+            return false;
+        }
+        PARKED.increment();
+        EXPIRY_TIMER.schedule(() -> room.execute(() -> {
+            if (room.removeDeadClient(client)) {
+                EXPIRED.increment();
+                LoggerUtil.INSTANCE.fine("Session expired");
+            }
+        }), graceMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+}
@@ -0,0 +1,39 @@
+package Project.Server;
+
+/**
+ * Classic token bucket: holds up to burst tokens, refills at rate tokens per
+ * second and every allowed action takes one.
+ * Not thread-safe; each connection's buckets are only used by its reader
+ * (reader thread or event loop).
+ */
+public class TokenBucket {
+    private final double burst;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param rate  tokens added per second
+     * @param burst most tokens held at once (starts full)
+     */
+    public TokenBucket(int rate, int burst) {
+        this.burst = Math.max(1, burst);
+        this.tokensPerNano = rate / 1e9;
+        this.tokens = this.burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * @return true if a token was taken, false if the bucket is empty
+     */
+    public boolean tryTake() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
@@ -0,0 +1,11 @@
+package Project.Server;
+
+/**
+ * How the Server handles socket I/O for connected clients.
+ * Selected at startup (see Server.main)
+ */
+public enum TransportMode {
+    BLOCKING, // one ServerThread (and platform reader thread) per client
+    VIRTUAL, // same as BLOCKING but the reader is a virtual thread, blocking reads park cheaply
+    NIO, // a small pool of selector event loops multiplexing all clients
+}
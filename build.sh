@@ -1,4 +1,5 @@
 #!/bin/bash
+# needs Java 21+ (virtual threads)
 wd=$(pwd)
 cd $1
 # delete all .class files
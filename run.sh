@@ -1,10 +1,12 @@
 #!/bin/bash
+# needs Java 21+ (virtual threads)
 # Convert input to lowercase
 input=$(echo "$2" | tr '[:upper:]' '[:lower:]')
 port=${3:-3000}  # Default port to 3000 if not provided
+transport=${4:-blocking}  # Server transport: blocking, nio or virtual
 
 if [ "$input" = "server" ]; then
-    java $1.Server.Server $port
+    java $1.Server.Server $port $transport
 elif [ "$input" = "client" ]; then
     java $1.Client.Client
     # In Milestone3 changes Client to ClientUI